@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.util.Random;
+
+import dataManagement.ConsumptionEstimator;
+
+/**
+ * Compares ConsumptionEstimator with recomputing the same exponentially
+ * weighted least squares fit over every reading so far whenever a reading
+ * arrives. Reports the time per reading of both and the largest difference of
+ * the estimated pour rates. Run with the number of readings to generate as
+ * argument, e.g. "20000".
+ *
+ * @author Aidan
+ *
+ */
+public class ConsumptionBenchmark {
+
+    private static final long READING_INTERVAL = 2000; // time in ms
+    private static final long HALF_LIFE = 3600000; // time in ms
+    private static final double NOISE = 0.2; // litres
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int readings = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        long[] times = new long[readings];
+        double[] weights = new double[readings];
+        createReadings(times, weights);
+
+        double[] incremental = new double[readings];
+        double[] batch = new double[readings];
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            ConsumptionEstimator estimator = new ConsumptionEstimator(HALF_LIFE, Double.POSITIVE_INFINITY);
+            for (int i = 0; i < readings; i++) {
+                estimator.add(times[i], weights[i]);
+                incremental[i] = estimator.getRate();
+            }
+            long incrementalTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < readings; i++) {
+                batch[i] = batchRate(times, weights, i + 1);
+            }
+            long batchTime = System.nanoTime() - start;
+
+            double maxDifference = 0;
+            for (int i = 0; i < readings; i++) {
+                maxDifference = Math.max(maxDifference, Math.abs(incremental[i] - batch[i]));
+            }
+
+            System.out.println(String.format(
+                    "%d readings: incremental %.0f ns/reading, batch %.0f ns/reading, max rate difference %.2e L/h",
+                    readings, (double) incrementalTime / readings, (double) batchTime / readings, maxDifference));
+        }
+    }
+
+    /**
+     * A keg losing 0.5 L an hour with pours of 0.4 L every 10 minutes and
+     * noise of the scale on top.
+     */
+    private static void createReadings(long[] times, double[] weights) {
+        Random random = new Random(42);
+        double level = 30;
+
+        for (int i = 0; i < times.length; i++) {
+            times[i] = 1500000000000L + i * READING_INTERVAL;
+            if (i % 300 == 0) {
+                level -= 0.4;
+            }
+            level -= 0.5 * READING_INTERVAL / 3600000.0;
+            weights[i] = level + random.nextGaussian() * NOISE;
+        }
+    }
+
+    /**
+     * @return pour rate in L/h of the weighted least squares fit over the
+     *         first count readings.
+     */
+    private static double batchRate(long[] times, double[] weights, int count) {
+        long latest = times[count - 1];
+        double s0 = 0, sx = 0, sy = 0, sxx = 0, sxy = 0;
+
+        for (int i = 0; i < count; i++) {
+            double x = (times[i] - latest) / 3600000.0;
+            double w = Math.pow(0.5, (double) (latest - times[i]) / HALF_LIFE);
+            s0 += w;
+            sx += w * x;
+            sy += w * weights[i];
+            sxx += w * x * x;
+            sxy += w * x * weights[i];
+        }
+
+        double denominator = s0 * sxx - sx * sx;
+        if (denominator <= 1e-12 * s0 * s0) {
+            return 0;
+        }
+        return Math.max(0, -(s0 * sxy - sx * sy) / denominator);
+    }
+}
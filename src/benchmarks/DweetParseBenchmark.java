@@ -0,0 +1,79 @@
+package benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import dataManagement.DweetPayloadParser;
+
+/**
+ * Compares reading the weight and temp out of a dweet with DweetPayloadParser
+ * against decoding the response into a String and parsing it into an org.json
+ * tree, as DweetPoller used to. Reports messages parsed per second and bytes
+ * allocated per message of each. Run with the number of messages to parse per
+ * round as argument, e.g. "1000000".
+ *
+ * @author Aidan
+ *
+ */
+public class DweetParseBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final String DWEET = "{\"this\":\"succeeded\",\"by\":\"getting\",\"the\":\"dweets\",\"with\":"
+            + "[{\"thing\":\"teradici-beer-fridge\",\"created\":\"2016-07-20T18:00:00.000Z\","
+            + "\"content\":{\"weight\":12.5,\"temp\":277.15}}]}";
+
+    private interface Parse {
+        double run(byte[] dweet) throws JSONException;
+    }
+
+    public static void main(String[] args) throws JSONException {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        byte[] dweet = DWEET.getBytes(StandardCharsets.UTF_8);
+        DweetPayloadParser parser = new DweetPayloadParser();
+
+        report("org.json", messages, dweet, bytes -> {
+            JSONObject response = (JSONObject) new JSONTokener(new String(bytes, StandardCharsets.UTF_8))
+                    .nextValue();
+            JSONObject content = response.getJSONArray("with").getJSONObject(0).getJSONObject("content");
+            return content.getDouble("weight") + content.getDouble("temp");
+        });
+        report("DweetPayloadParser", messages, dweet, bytes -> {
+            parser.parseDweet(bytes, 0, bytes.length);
+            return parser.getWeight() + parser.getTemp();
+        });
+    }
+
+    private static void report(String name, int messages, byte[] dweet, Parse parse) throws JSONException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        double check = 0;
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            for (int j = 0; j < messages; j++) {
+                check += parse.run(dweet);
+            }
+        }
+
+        long totalTime = 0;
+        long totalAllocated = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (int j = 0; j < messages; j++) {
+                check += parse.run(dweet);
+            }
+            totalTime += System.nanoTime() - start;
+            totalAllocated += threads.getThreadAllocatedBytes(thread) - allocated;
+        }
+
+        long parsed = (long) messages * MEASURED_ROUNDS;
+        System.out.println(String.format("%s: %.0f messages/s, %.1f bytes allocated/message (checksum %.1f)", name,
+                parsed * 1e9 / totalTime, (double) totalAllocated / parsed, check));
+    }
+}
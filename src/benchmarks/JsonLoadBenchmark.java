@@ -0,0 +1,137 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import dataManagement.DataManager;
+import dataManagement.UserFlags;
+import tools.Util;
+
+/**
+ * Compares loading large synthetic beer and user files by streaming them
+ * through DataManager against the previous approach of reading each file into
+ * a String and parsing it into an org.json tree. Reports load time and peak
+ * heap usage of each. Run with the number of beers and users to generate as
+ * arguments, e.g. "100000 500000".
+ *
+ * @author Aidan
+ *
+ */
+public class JsonLoadBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private interface Load {
+        int run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int beers = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 500000;
+        String beerPath = SyntheticData.createDataFiles(beers, 0);
+        String userPath = SyntheticData.createDataFiles(0, users);
+        DataManager dataManager = new DataManager(beerPath);
+
+        report(beers + " beers, tree", () -> readBeersWithTree(beerPath).size());
+        try {
+            report(beers + " beers, stream", () -> dataManager.readBeerData().size());
+        } finally {
+            dataManager.close();
+        }
+        report(users + " users, tree", () -> readUsersWithTree(userPath).size());
+        // includes the one-off key derivation of a new DataManager
+        report(users + " users, stream", () -> {
+            new DataManager(userPath).close();
+            return users;
+        });
+    }
+
+    private static void report(String name, Load load) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            load.run();
+        }
+
+        long totalTime = 0;
+        long maxHeap = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long baseHeap = resetPeakHeap();
+            long start = System.nanoTime();
+            load.run();
+            totalTime += System.nanoTime() - start;
+            maxHeap = Math.max(maxHeap, peakHeap() - baseHeap);
+        }
+
+        System.out.println(name + ": " + totalTime / MEASURED_ROUNDS / 1000000 + " ms, peak heap "
+                + maxHeap / (1024 * 1024) + " MB");
+    }
+
+    /**
+     * The way DataManager read BEER_FILE before it was streamed.
+     */
+    private static Map<String, Integer> readBeersWithTree(String path) throws IOException, JSONException {
+        Map<String, Integer> beerRatings = new HashMap<String, Integer>();
+        JSONObject obj = new JSONObject(new JSONTokener(Util.readFileToString(path + "beer_data.json")));
+        JSONArray jsonBeers = obj.getJSONArray("beers");
+
+        for (int i = 0; i < jsonBeers.length(); i++) {
+            JSONObject nextBeer = jsonBeers.getJSONObject(i);
+            String beerName = nextBeer.keys().next().toString();
+            beerRatings.put(beerName, nextBeer.getInt(beerName));
+        }
+
+        return beerRatings;
+    }
+
+    /**
+     * The way DataManager read USER_FILE before it was streamed.
+     */
+    private static Map<String, UserFlags> readUsersWithTree(String path) throws IOException, JSONException {
+        Map<String, UserFlags> userData = new HashMap<String, UserFlags>();
+        JSONObject obj = new JSONObject(new JSONTokener(Util.readFileToString(path + "user_data.json")));
+        JSONArray users = obj.getJSONArray("users");
+
+        for (int i = 0; i < users.length(); i++) {
+            JSONObject user = users.getJSONObject(i);
+            userData.put(user.getString("hash"), new UserFlags(user.getBoolean("admin"), user.getBoolean("voted") ? 1 : 0));
+        }
+
+        return userData;
+    }
+
+    /**
+     * Collects garbage and resets the peak usage of every heap pool.
+     *
+     * @return bytes of heap in use afterwards.
+     */
+    private static long resetPeakHeap() {
+        System.gc();
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,170 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dataManagement.DweetManager;
+import dataManagement.ReplaySensorSource;
+import dataManagement.SensorSource;
+import gui.TempChartSampler;
+
+/**
+ * Replays a sensor trace through DweetManager at increasing speeds without a
+ * display and reports the latency from a reading arriving to the properties
+ * being updated and to the next refresh of the temperature chart, the cost of
+ * a refresh and how busy the GUI thread is. A single thread stands in for the
+ * JavaFX thread: it runs the property updates queued by DweetManager and, every
+ * 2.1 s like KegManager, picks the chart points with TempChartSampler.
+ * <p>
+ * Run with the speeds as arguments, e.g. "1 10 100 1000", optionally preceded
+ * by the path of a trace file, see ReplaySensorSource. Without a file a
+ * synthetic trace of a reading every 100 ms is replayed for 5 s per speed.
+ *
+ * @author Aidan
+ *
+ */
+public class ReplayBenchmark {
+
+    private static final long READING_INTERVAL = 100; // time in ms
+    private static final long RUN_TIME = 5000; // time in ms per speed
+    private static final long REFRESH_RATE = 2100; // time in ms, see KegManager
+    private static final long CHART_SPAN = 3600000; // time in ms
+    private static final int HISTORY_POINTS = 4096;
+    private static final int CHART_POINTS = 200;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String trace = null;
+        int first = 0;
+        if (args.length > 0 && !args[0].matches("[0-9.]+")) {
+            trace = args[0];
+            first = 1;
+        }
+        String[] speeds = args.length > first ? Arrays.copyOfRange(args, first, args.length)
+                : new String[] { "1", "10", "100", "1000" };
+
+        for (String speed : speeds) {
+            double factor = Double.parseDouble(speed);
+            ReplaySensorSource replay = trace != null ? ReplaySensorSource.load(trace, factor)
+                    : createTrace((int) (RUN_TIME * factor / READING_INTERVAL), factor);
+            run(replay);
+        }
+    }
+
+    private static void run(ReplaySensorSource replay) throws InterruptedException {
+        ScheduledExecutorService fxThread = Executors.newSingleThreadScheduledExecutor();
+        AtomicLong emitTime = new AtomicLong(); // of the latest reading
+        long[] updateLatencies = new long[replay.getCount()];
+        long[] refreshLatencies = new long[1024];
+        long[] refreshCosts = new long[1024];
+        int[] counts = new int[2]; // updates and refreshes, fx thread only
+        long[] busy = new long[1]; // fx thread only
+
+        SensorSource timed = new SensorSource() {
+            @Override
+            public void start(Listener listener) {
+                replay.start((weight, temp) -> {
+                    emitTime.set(System.nanoTime());
+                    listener.onReading(weight, temp);
+                });
+            }
+
+            @Override
+            public void stop() {
+                replay.stop();
+            }
+        };
+
+        Executor fxExecutor = update -> fxThread.execute(() -> {
+            long start = System.nanoTime();
+            update.run();
+            long end = System.nanoTime();
+            if (counts[0] < updateLatencies.length) {
+                updateLatencies[counts[0]++] = end - emitTime.get();
+            }
+            busy[0] += end - start;
+        });
+
+        long wallStart = System.nanoTime();
+        DweetManager dweetManager = new DweetManager(timed, fxExecutor);
+        TempChartSampler chartSampler = new TempChartSampler(HISTORY_POINTS, CHART_POINTS);
+
+        fxThread.scheduleAtFixedRate(() -> {
+            long start = System.nanoTime();
+            long newest = emitTime.get();
+            long now = System.currentTimeMillis();
+            chartSampler.sample(dweetManager.getTempHistory(), null, now - CHART_SPAN, Long.MAX_VALUE);
+            long end = System.nanoTime();
+            if (newest != 0 && counts[1] < refreshCosts.length) {
+                refreshLatencies[counts[1]] = end - newest;
+                refreshCosts[counts[1]++] = end - start;
+            }
+            busy[0] += end - start;
+        }, REFRESH_RATE, REFRESH_RATE, TimeUnit.MILLISECONDS);
+
+        while (!replay.isFinished()) {
+            Thread.sleep(50);
+        }
+        long wallTime = System.nanoTime() - wallStart;
+        dweetManager.stop();
+        fxThread.shutdown();
+        fxThread.awaitTermination(10, TimeUnit.SECONDS);
+
+        System.out.println(String.format(
+                "%.0fx: %d readings at %.0f/s, %d coalesced; reading to property p50 %.0f us, p99 %.0f us, "
+                        + "max %.0f us; reading to chart refresh p50 %.0f ms, max %.0f ms; refresh cost mean %.2f ms, "
+                        + "max %.2f ms; GUI thread busy %.2f%%",
+                replay.getSpeed(), replay.getCount(), replay.getCount() * 1e9 / wallTime,
+                dweetManager.getCoalescedCount(), percentile(updateLatencies, counts[0], 0.5) / 1e3,
+                percentile(updateLatencies, counts[0], 0.99) / 1e3, percentile(updateLatencies, counts[0], 1) / 1e3,
+                percentile(refreshLatencies, counts[1], 0.5) / 1e6, percentile(refreshLatencies, counts[1], 1) / 1e6,
+                mean(refreshCosts, counts[1]) / 1e6, percentile(refreshCosts, counts[1], 1) / 1e6,
+                100.0 * busy[0] / wallTime));
+    }
+
+    /**
+     * A keg losing a pint every minute or so, in a fridge cycling between 276
+     * and 278 K.
+     */
+    private static ReplaySensorSource createTrace(int readings, double speed) {
+        long[] times = new long[readings];
+        double[] weights = new double[readings];
+        double[] temps = new double[readings];
+        Random random = new Random(11);
+        double weight = 30;
+
+        for (int i = 0; i < readings; i++) {
+            times[i] = i * READING_INTERVAL;
+            if (random.nextInt(600) == 0) {
+                weight -= 0.5;
+            }
+            double cycle = (double) (times[i] % 2400000) / 2400000;
+            weights[i] = weight + random.nextGaussian() * 0.2;
+            temps[i] = 276 + 2 * (cycle < 0.5 ? 2 * cycle : 2 - 2 * cycle) + random.nextGaussian() * 0.05;
+        }
+
+        return new ReplaySensorSource(times, weights, temps, readings, speed);
+    }
+
+    private static double percentile(long[] values, int count, double p) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(p * count) - 1];
+    }
+
+    private static double mean(long[] values, int count) {
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += values[i];
+        }
+        return count == 0 ? 0 : (double) sum / count;
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import java.util.Map;
+
+import dataManagement.DataManager;
+import dataManagement.SnapshotFormat;
+
+/**
+ * Compares load and save throughput of the JSON and binary snapshot formats on
+ * synthetic beer and user data. Run with the number of beers and users to
+ * generate as arguments, e.g. "100000 500000".
+ *
+ * @author Aidan
+ *
+ */
+public class SnapshotBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int beers = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 500000;
+
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            String path = SyntheticData.createDataFiles(beers, users);
+            DataManager dataManager = new DataManager(path, format);
+            try {
+                Map<String, Integer> beerRatings = dataManager.readBeerData();
+
+                report(format + " beer save", beers, () -> dataManager.writeBeerData(beerRatings));
+                report(format + " beer load", beers, () -> dataManager.readBeerData());
+                report(format + " user save", users, () -> dataManager.compactUsers());
+            } finally {
+                dataManager.close();
+            }
+            report(format + " user load", users, () -> new DataManager(path, format).close());
+        }
+    }
+
+    private static void report(String name, int records, Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            operation.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            operation.run();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9 / MEASURED_ROUNDS;
+
+        System.out.println(String.format("%s: %.1f ms, %.0f records/s", name, seconds * 1000, records / seconds));
+    }
+}
@@ -0,0 +1,48 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+import org.json.JSONException;
+
+import dataManagement.DataManager;
+
+/**
+ * Measures DataManager startup time against synthetic user files, both in the
+ * current hashed format and in the old encrypted format that is migrated on
+ * startup. Run with the number of users to generate as arguments, e.g. "1000
+ * 10000".
+ * 
+ * @author Aidan
+ *
+ */
+public class StartupBenchmark {
+
+    public static void main(String[] args) throws IOException, JSONException, GeneralSecurityException {
+        String[] sizes = args.length > 0 ? args : new String[] { "1000", "10000" };
+
+        for (String size : sizes) {
+            int users = Integer.parseInt(size);
+
+            DataManager dataManager = new DataManager(SyntheticData.createUserFile(users));
+            try {
+                long keyTime = dataManager.getKeyDerivationTime();
+                System.out.println(users + " users: key derivation " + keyTime + " ms, user load "
+                        + dataManager.getUserLoadTime() + " ms (one derivation per user would be ~"
+                        + keyTime * users + " ms)");
+            } finally {
+                dataManager.close();
+            }
+
+            String[] legacy = SyntheticData.createLegacyUserFile(users);
+            SyntheticData.writeUserFile(legacy[0], legacy[1]);
+            dataManager = new DataManager(legacy[0]);
+            try {
+                System.out.println(users + " users, old encrypted format: user load and migration "
+                        + dataManager.getUserLoadTime() + " ms");
+            } finally {
+                dataManager.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import dataManagement.DataManager;
+import tests.LegacyUserCipher;
+
+/**
+ * Creates temporary data directories filled with synthetic data for the
+ * benchmarks in this package.
+ * 
+ * @author Aidan
+ *
+ */
+final class SyntheticData {
+
+    private static final String SEPARATOR = System.getProperty("file.separator");
+
+    /**
+     * @return String giving a synthetic key card id for user number i.
+     */
+    static String userId(int i) {
+        return String.format("%025x", i);
+    }
+
+    /**
+     * Creates a temporary data directory holding a user file with the given
+     * number of users. The users are compacted into the user file, so loading
+     * it does not replay the user journal.
+     * 
+     * @return String giving the full path of the data directory.
+     */
+    static String createUserFile(int users) throws IOException, JSONException {
+        String path = createDataDirectory();
+
+        DataManager dataManager = new DataManager(path);
+        try {
+            for (int i = 0; i < users; i++) {
+                dataManager.addUser(userId(i));
+            }
+            dataManager.compactUsers();
+        } finally {
+            dataManager.close();
+        }
+
+        return path;
+    }
+
+    /**
+     * Creates a temporary data directory holding a salt file and returns the
+     * contents of a user file in the old encrypted format with the given
+     * number of users. The user file itself is not written since DataManager
+     * migrates it to the new format as soon as it is read; use
+     * writeUserFile() before every load.
+     * 
+     * @return String[] holding the full path of the data directory at index 0
+     *         and the contents of the old user file at index 1.
+     */
+    static String[] createLegacyUserFile(int users) throws IOException, JSONException, GeneralSecurityException {
+        String path = createDataDirectory();
+        new DataManager(path).close(); // creates the salt file
+
+        LegacyUserCipher cipher = new LegacyUserCipher(Files.readAllBytes(Paths.get(path + "hac.bin")));
+        JSONArray dataArray = new JSONArray();
+
+        for (int i = 0; i < users; i++) {
+            String[] encrypted = cipher.encrypt(userId(i));
+            JSONObject user = new JSONObject();
+            user.put("id", encrypted[0]);
+            user.put("iv", encrypted[1]);
+            user.put("admin", false);
+            user.put("voted", false);
+            dataArray.put(user);
+        }
+
+        JSONObject jsonFile = new JSONObject();
+        jsonFile.put("users", dataArray);
+
+        return new String[] { path, jsonFile.toString() };
+    }
+
+    /**
+     * Creates a temporary data directory holding a beer file with the given
+     * number of beers and a user file with the given number of users, both
+     * written directly rather than through a DataManager.
+     * 
+     * @return String giving the full path of the data directory.
+     */
+    static String createDataFiles(int beers, int users) throws IOException, JSONException {
+        String path = createDataDirectory();
+
+        JSONArray beerArray = new JSONArray();
+        for (int i = 0; i < beers; i++) {
+            JSONObject beer = new JSONObject();
+            beer.put("Synthetic Beer " + i, i % 100);
+            beerArray.put(beer);
+        }
+        JSONObject beerFile = new JSONObject();
+        beerFile.put("beers", beerArray);
+        writeFile(path + "beer_data.json", beerFile.toString());
+
+        // hashes of the same length as those made by UserCrypto
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        JSONArray userArray = new JSONArray();
+        for (int i = 0; i < users; i++) {
+            JSONObject user = new JSONObject();
+            user.put("hash", Base64.getEncoder().encodeToString(sha256.digest(userId(i).getBytes("UTF-8"))));
+            user.put("admin", i % 50 == 0);
+            user.put("voted", i % 3 == 0);
+            userArray.put(user);
+        }
+        JSONObject userFile = new JSONObject();
+        userFile.put("version", 2);
+        userFile.put("users", userArray);
+        writeUserFile(path, userFile.toString());
+
+        return path;
+    }
+
+    /**
+     * Overwrites the user file in the given data directory with contents.
+     */
+    static void writeUserFile(String path, String contents) throws IOException {
+        writeFile(path + "user_data.json", contents);
+    }
+
+    private static void writeFile(String filePath, String contents) throws IOException {
+        FileWriter writer = new FileWriter(filePath, false);
+        writer.write(contents);
+        writer.close();
+    }
+
+    private static String createDataDirectory() throws IOException {
+        File dir = Files.createTempDirectory("beer_fridge_bench").toFile();
+        return dir.getPath() + SEPARATOR;
+    }
+}
@@ -0,0 +1,96 @@
+package benchmarks;
+
+import java.util.Random;
+
+import dataManagement.TempAnomalyDetector;
+
+/**
+ * Replays a synthetic temperature trace of several days sampled at 100 Hz
+ * through TempAnomalyDetector and reports the time per reading, how many times
+ * faster than real time that is, and when the detector raised and cleared the
+ * warming state. The trace is generated in chunks ahead of timing, so only the
+ * detector is measured. Run with the number of days to replay as argument,
+ * e.g. "3".
+ * <p>
+ * The fridge cycles between 276 and 278 K, the door is opened for a minute
+ * every 4 hours and the compressor fails at noon of the second day, warming
+ * the fridge by 2 K an hour for 4 hours before it is repaired.
+ *
+ * @author Aidan
+ *
+ */
+public class TempAnomalyBenchmark {
+
+    private static final long SAMPLE_INTERVAL = 10; // time in ms, 100 Hz
+    private static final long DAY = 86400000L;
+    private static final long HOUR = 3600000L;
+    private static final int CHUNK = 1 << 20; // readings generated at once
+    private static final long START = 1500000000000L / DAY * DAY;
+    private static final long FAILURE_START = START + DAY + 12 * HOUR;
+    private static final long FAILURE_END = FAILURE_START + 4 * HOUR;
+
+    public static void main(String[] args) {
+        int days = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        long readings = days * DAY / SAMPLE_INTERVAL;
+        double[] temps = new double[CHUNK];
+        Random random = new Random(23);
+
+        TempAnomalyDetector detector = new TempAnomalyDetector(6 * HOUR, 4, 2, 300000, 0.3, 1800000);
+        boolean warming = false;
+        long elapsed = 0;
+
+        for (long first = 0; first < readings; first += CHUNK) {
+            int count = (int) Math.min(CHUNK, readings - first);
+            for (int i = 0; i < count; i++) {
+                temps[i] = temp(START + (first + i) * SAMPLE_INTERVAL, random);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                long time = START + (first + i) * SAMPLE_INTERVAL;
+                if (detector.add(time, temps[i]) != warming) {
+                    warming = !warming;
+                    elapsed += System.nanoTime() - start;
+                    System.out.println(String.format("%s at %.2f h", warming ? "Warming" : "Cleared",
+                            (double) (time - START) / HOUR));
+                    start = System.nanoTime();
+                }
+            }
+            elapsed += System.nanoTime() - start;
+        }
+
+        double nsPerReading = (double) elapsed / readings;
+        System.out.println(String.format(
+                "%d readings over %d days: %.1f ns/reading, %.0f readings/s, %.0fx real time at 100 Hz, "
+                        + "%d warnings (failure from %.2f h to %.2f h)",
+                readings, days, nsPerReading, 1e9 / nsPerReading, 1e9 / nsPerReading / 100,
+                detector.getWarmingCount(), (double) (FAILURE_START - START) / HOUR,
+                (double) (FAILURE_END - START) / HOUR));
+    }
+
+    /**
+     * @return temperature of the synthetic fridge at time.
+     */
+    private static double temp(long time, Random random) {
+        // compressor cycle of 40 minutes
+        double cycle = (double) ((time - START) % 2400000) / 2400000;
+        double temp = 276 + 2 * (cycle < 0.5 ? 2 * cycle : 2 - 2 * cycle);
+
+        // door opened for a minute every 4 hours
+        long sinceDoor = (time - START) % (4 * HOUR) - 2 * HOUR;
+        if (sinceDoor >= 0 && sinceDoor < 60000) {
+            temp += 1.5 * sinceDoor / 60000;
+        } else if (sinceDoor >= 60000) {
+            temp += 1.5 * Math.exp(-(sinceDoor - 60000) / 300000.0);
+        }
+
+        // compressor failure, cooling down again after the repair
+        if (time >= FAILURE_START && time < FAILURE_END) {
+            temp += 2.0 * (time - FAILURE_START) / HOUR;
+        } else if (time >= FAILURE_END) {
+            temp += 8 * Math.exp(-(double) (time - FAILURE_END) / HOUR);
+        }
+
+        return temp + random.nextGaussian() * 0.05;
+    }
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+import org.json.JSONException;
+
+import dataManagement.DataManager;
+
+/**
+ * Compares serial and parallel decryption of synthetic user files in the old
+ * encrypted format when a DataManager starts up. Run with the number of users
+ * to generate as arguments, e.g. "10000 100000".
+ * 
+ * @author Aidan
+ *
+ */
+public class UserLoadBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException, JSONException, GeneralSecurityException {
+        String[] sizes = args.length > 0 ? args : new String[] { "10000", "100000" };
+        int parallelism = Runtime.getRuntime().availableProcessors();
+
+        for (String size : sizes) {
+            int users = Integer.parseInt(size);
+            String[] legacy = SyntheticData.createLegacyUserFile(users);
+
+            long serial = averageLoadTime(legacy, 1);
+            long parallel = averageLoadTime(legacy, parallelism);
+
+            System.out.println(users + " users: serial " + serial + " ms, parallel (" + parallelism + " threads) "
+                    + parallel + " ms");
+        }
+    }
+
+    private static long averageLoadTime(String[] legacy, int parallelism) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            loadTime(legacy, parallelism);
+        }
+
+        long total = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            total += loadTime(legacy, parallelism);
+        }
+
+        return total / MEASURED_ROUNDS;
+    }
+
+    private static long loadTime(String[] legacy, int parallelism) throws IOException {
+        SyntheticData.writeUserFile(legacy[0], legacy[1]);
+        DataManager dataManager = new DataManager(legacy[0], parallelism);
+        try {
+            return dataManager.getUserLoadTime();
+        } finally {
+            dataManager.close();
+        }
+    }
+}
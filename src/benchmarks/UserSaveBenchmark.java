@@ -0,0 +1,89 @@
+package benchmarks;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import dataManagement.DataManager;
+import tests.LegacyUserCipher;
+
+/**
+ * Compares the latency of DataManager.writeUsersToFile(), which stores a hash
+ * of each user, with the old save path that encrypted every user with a fresh
+ * IV. Run with the number of users to generate as arguments, e.g. "1000
+ * 10000".
+ * 
+ * @author Aidan
+ *
+ */
+public class UserSaveBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException, JSONException, GeneralSecurityException {
+        String[] sizes = args.length > 0 ? args : new String[] { "1000", "10000" };
+
+        for (String size : sizes) {
+            int users = Integer.parseInt(size);
+            String path = SyntheticData.createUserFile(users);
+            DataManager dataManager = new DataManager(path);
+            try {
+                LegacyUserCipher cipher = new LegacyUserCipher(Files.readAllBytes(Paths.get(path + "hac.bin")));
+
+                for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                    dataManager.writeUsersToFile();
+                    writeEncrypted(cipher, path, users);
+                }
+
+                long hashed = 0;
+                long encrypted = 0;
+                for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                    long start = System.nanoTime();
+                    dataManager.writeUsersToFile();
+                    hashed += System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    writeEncrypted(cipher, path, users);
+                    encrypted += System.nanoTime() - start;
+                }
+
+                System.out.println(users + " users: hashed save " + hashed / MEASURED_ROUNDS / 1000
+                        + " us, encrypted save " + encrypted / MEASURED_ROUNDS / 1000 + " us");
+            } finally {
+                dataManager.close();
+            }
+        }
+    }
+
+    /**
+     * Reproduces the old save path: every user is encrypted with a fresh IV
+     * and the whole file is rewritten.
+     */
+    private static void writeEncrypted(LegacyUserCipher cipher, String path, int users)
+            throws JSONException, IOException, GeneralSecurityException {
+        JSONObject jsonFile = new JSONObject();
+        JSONArray dataArray = new JSONArray();
+
+        for (int i = 0; i < users; i++) {
+            JSONObject user = new JSONObject();
+            String[] encrypted = cipher.encrypt(SyntheticData.userId(i));
+            user.put("id", encrypted[0]);
+            user.put("iv", encrypted[1]);
+            user.put("admin", false);
+            user.put("voted", false);
+            dataArray.put(user);
+        }
+
+        jsonFile.put("users", dataArray);
+        FileWriter writer = new FileWriter(path + "encrypted_users.json", false);
+        writer.write(jsonFile.toString());
+        writer.close();
+    }
+}
@@ -0,0 +1,208 @@
+package dataManagement;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Encodes and decodes the binary snapshot format of BEER_FILE and USER_FILE,
+ * see SnapshotFormat.BINARY. Every snapshot starts with a header and ends with
+ * a CRC32 of everything before it, so a damaged snapshot is detected and
+ * recovered from a backup like a damaged JSON file. All values are big-endian.
+ *
+ * <pre>
+ * header:  int MAGIC, short VERSION, byte kind (BEERS or USERS)
+ * BEERS:   int beerCount, beerCount * (int length, length bytes UTF-8 name,
+ *          int votes)
+ * USERS:   short hashLength, int currentEpoch, int userCount,
+ *          userCount * (hashLength bytes hash, byte flags, int voteEpoch)
+ * trailer: int CRC32
+ * </pre>
+ *
+ * Beer names are stored as UTF-8 preceded by their length. Users are
+ * fixed-width records holding the raw bytes of their hash, see
+ * UserCrypto.hash(), their flags as bits and the voting epoch they last voted
+ * in.
+ *
+ * @author Aidan
+ *
+ */
+final class BinarySnapshot {
+
+    private static final int MAGIC = 0x42465348; // "BFSH"
+    private static final short VERSION = 1;
+    private static final byte BEERS = 1;
+    private static final byte USERS = 2;
+    private static final int HEADER_SIZE = 7;
+    private static final int TRAILER_SIZE = 4;
+
+    private static final int ADMIN_FLAG = 1;
+
+    private BinarySnapshot() {
+    }
+
+    /**
+     * @return ByteBuffer holding a snapshot of beerRatings, ready to be
+     *         written.
+     */
+    static ByteBuffer encodeBeers(Map<String, Integer> beerRatings) {
+        byte[][] names = new byte[beerRatings.size()][];
+        int[] votes = new int[names.length];
+        int size = HEADER_SIZE + 4 + names.length * 8 + TRAILER_SIZE;
+
+        int i = 0;
+        for (Map.Entry<String, Integer> beer : beerRatings.entrySet()) {
+            names[i] = beer.getKey().getBytes(StandardCharsets.UTF_8);
+            votes[i] = beer.getValue();
+            size += names[i++].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        putHeader(buffer, BEERS);
+        buffer.putInt(names.length);
+        for (i = 0; i < names.length; i++) {
+            buffer.putInt(names[i].length);
+            buffer.put(names[i]);
+            buffer.putInt(votes[i]);
+        }
+
+        return finish(buffer);
+    }
+
+    /**
+     * Reads a snapshot written by encodeBeers() into beerRatings.
+     *
+     * @throws IOException
+     *             if buffer does not hold a complete beer snapshot.
+     */
+    static void decodeBeers(ByteBuffer buffer, Map<String, Integer> beerRatings) throws IOException {
+        checkSnapshot(buffer, BEERS);
+
+        try {
+            int beers = buffer.getInt();
+            for (int i = 0; i < beers; i++) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("Malformed beer snapshot");
+                }
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                beerRatings.put(new String(bytes, StandardCharsets.UTF_8), buffer.getInt());
+            }
+
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Malformed beer snapshot", e);
+        }
+    }
+
+    /**
+     * @return ByteBuffer holding a snapshot of userData, ready to be written.
+     * @throws IOException
+     *             if the hashes in userData are not all of the same length.
+     */
+    static ByteBuffer encodeUsers(UserStore userData) throws IOException {
+        int[] hashLength = { -1 };
+        ByteBuffer[] buffer = { null };
+
+        userData.forEach((hash, flags, voteEpoch) -> {
+            if (buffer[0] == null) {
+                hashLength[0] = hash.length;
+                buffer[0] = allocateUsers(userData, hash.length);
+            } else if (hash.length != hashLength[0]) {
+                throw new IOException("User hashes differ in length");
+            }
+
+            buffer[0].put(hash);
+            buffer[0].put((byte) ((flags & UserStore.ADMIN) != 0 ? ADMIN_FLAG : 0));
+            buffer[0].putInt(voteEpoch);
+        });
+
+        if (buffer[0] == null) {
+            buffer[0] = allocateUsers(userData, 0);
+        }
+
+        return finish(buffer[0]);
+    }
+
+    private static ByteBuffer allocateUsers(UserStore userData, int hashLength) {
+        ByteBuffer buffer = ByteBuffer
+                .allocate(HEADER_SIZE + 2 + 4 + 4 + userData.size() * (hashLength + 5) + TRAILER_SIZE);
+        putHeader(buffer, USERS);
+        buffer.putShort((short) hashLength);
+        buffer.putInt(userData.getCurrentEpoch());
+        buffer.putInt(userData.size());
+        return buffer;
+    }
+
+    /**
+     * Reads a snapshot written by encodeUsers() into userData.
+     *
+     * @throws IOException
+     *             if buffer does not hold a complete user snapshot.
+     */
+    static void decodeUsers(ByteBuffer buffer, UserStore userData) throws IOException {
+        checkSnapshot(buffer, USERS);
+
+        try {
+            byte[] hash = new byte[buffer.getShort() & 0xFFFF];
+            userData.setCurrentEpoch(buffer.getInt());
+            int users = buffer.getInt();
+
+            for (int i = 0; i < users; i++) {
+                buffer.get(hash);
+                int flags = buffer.get();
+                int voteEpoch = buffer.getInt();
+                userData.add(hash, (flags & ADMIN_FLAG) != 0 ? UserStore.ADMIN : 0, voteEpoch);
+            }
+
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Malformed user snapshot", e);
+        }
+    }
+
+    private static void putHeader(ByteBuffer buffer, byte kind) {
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.put(kind);
+    }
+
+    /**
+     * Appends the CRC32 of everything written to buffer and flips it for
+     * writing.
+     */
+    private static ByteBuffer finish(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Checks the header and CRC32 of the snapshot in buffer and leaves buffer
+     * positioned after the header, limited to the end of the body.
+     */
+    private static void checkSnapshot(ByteBuffer buffer, byte kind) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE + TRAILER_SIZE) {
+            throw new IOException("Snapshot too short");
+        }
+
+        int end = buffer.limit() - TRAILER_SIZE;
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+        body.limit(end);
+        crc.update(body);
+
+        if ((int) crc.getValue() != buffer.getInt(end)) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+
+        if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION || buffer.get() != kind) {
+            throw new IOException("Not a supported snapshot");
+        }
+        buffer.limit(end);
+    }
+}
@@ -0,0 +1,133 @@
+package dataManagement;
+
+/**
+ * Estimates how fast beer is poured from the keg by an exponentially weighted
+ * linear regression of the weight over time. Every reading is weighted by
+ * half for every half-life that passed since it was taken, so the estimate
+ * follows changes of the pour rate while the noise of single readings of the
+ * scale averages out. Only the weighted sums of the regression are kept,
+ * making every reading O(1) in time and memory.
+ * <p>
+ * Times are kept relative to the latest reading, so the sums stay small no
+ * matter how long the estimator runs. A reading well above the estimated
+ * level means a full keg was tapped; the estimator then starts over, as it
+ * does when reset() is called.
+ *
+ * @author Aidan
+ *
+ */
+public class ConsumptionEstimator {
+
+    private static final double MS_PER_HOUR = 3600000.0;
+    private static final double MIN_RATE = 0.01; // per hour, below counts as
+                                                 // not pouring
+
+    private final long halfLife; // in ms
+    private final double stepThreshold;
+
+    // weighted sums with x the time in hours relative to the latest reading
+    private double s0, sx, sy, sxx, sxy;
+    private long latestTime;
+    private long resetCount = 0;
+
+    /**
+     * @param halfLife
+     *            long giving the time in ms after which a reading counts half.
+     * @param stepThreshold
+     *            double giving how far a reading has to be above the estimated
+     *            level to start over, in units of weight.
+     */
+    public ConsumptionEstimator(long halfLife, double stepThreshold) {
+        this.halfLife = halfLife;
+        this.stepThreshold = stepThreshold;
+    }
+
+    /**
+     * Adds a reading. A time before the latest reading is taken as the time
+     * of the latest reading.
+     */
+    public synchronized void add(long time, double weight) {
+        if (s0 > 0) {
+            long elapsed = Math.max(0, time - latestTime);
+            double dx = elapsed / MS_PER_HOUR;
+
+            if (weight - (getLevel() + getSlope() * dx) > stepThreshold) {
+                reset();
+                resetCount++;
+            } else {
+                double decay = Math.pow(0.5, (double) elapsed / halfLife);
+                s0 *= decay;
+                sx *= decay;
+                sy *= decay;
+                sxx *= decay;
+                sxy *= decay;
+
+                // move x = 0 to the new reading
+                sxx -= 2 * dx * sx - dx * dx * s0;
+                sxy -= dx * sy;
+                sx -= dx * s0;
+            }
+        }
+
+        latestTime = Math.max(time, latestTime);
+        s0 += 1;
+        sy += weight;
+    }
+
+    /**
+     * Forgets all readings, e.g. when a new keg is tapped.
+     */
+    public synchronized void reset() {
+        s0 = sx = sy = sxx = sxy = 0;
+    }
+
+    /**
+     * @return amount of weight poured per hour, 0 if it cannot be estimated
+     *         yet or the keg is not getting lighter.
+     */
+    public synchronized double getRate() {
+        return Math.max(0, -getSlope());
+    }
+
+    /**
+     * @return estimated weight at the time of the latest reading, smoothed
+     *         over the readings before it.
+     */
+    public synchronized double getLevel() {
+        return s0 > 0 ? (sy - getSlope() * sx) / s0 : 0;
+    }
+
+    /**
+     * @param emptyWeight
+     *            double giving the weight of the empty keg.
+     * @return hours until the keg is empty at the current rate, measured from
+     *         the latest reading, or Double.POSITIVE_INFINITY if no beer is
+     *         being poured.
+     */
+    public synchronized double getTimeToEmpty(double emptyWeight) {
+        double rate = getRate();
+        if (rate < MIN_RATE) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.max(0, getLevel() - emptyWeight) / rate;
+    }
+
+    /**
+     * @return number of times a new keg was detected.
+     */
+    public synchronized long getResetCount() {
+        return resetCount;
+    }
+
+    /**
+     * @return change of weight per hour, 0 while fewer than two readings at
+     *         different times are weighted in.
+     */
+    private double getSlope() {
+        double denominator = s0 * sxx - sx * sx;
+        if (denominator <= 1e-12 * s0 * s0) {
+            return 0;
+        }
+        return (s0 * sxy - sx * sy) / denominator;
+    }
+}
@@ -1,14 +0,0 @@
-package dataManagement;
-
-/**
- * Types of content that can be polled from Dweet.io
- * 
- * @author Aidan
- *
- */
-public enum ContentType {
-    
-    WEIGHT,
-    TEMP
-
-}
\ No newline at end of file
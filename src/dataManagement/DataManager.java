@@ -3,32 +3,24 @@ package dataManagement;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.io.UncheckedIOException;
 
-import java.security.AlgorithmParameters;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.InvalidParameterSpecException;
-import java.security.spec.KeySpec;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-
-import javax.crypto.BadPaddingException;
-import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
-import javax.crypto.SecretKey;
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.PBEKeySpec;
-import javax.crypto.spec.SecretKeySpec;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -39,7 +31,8 @@ import tools.Util;
 
 /**
  * This class is responsible for reading and writing data to and from the local
- * file system. All data is stored in JSON format. This class should be
+ * file system. Data is stored in JSON format unless another SnapshotFormat is
+ * selected, see getSnapshotFormat(). This class should be
  * instantiated only once at the beginning of the program execution at which
  * point it will look for data files and load their contents into memory. If the
  * data files cannot be found then empty files will be created. From this point
@@ -53,43 +46,189 @@ public class DataManager {
     private static final String BEER_FILE = "beer_data.json";
     private static final String USER_FILE = "user_data.json";
     private static final String CURRENT_BEER_FILE = "current_beer.json";
+    private static final String BEER_SNAPSHOT_FILE = "beer_data.bin";
+    private static final String USER_SNAPSHOT_FILE = "user_data.bin";
+    private static final String USER_JOURNAL_FILE = "user_journal.log";
+    private static final String VOTE_LOG_FILE = "vote_log.log";
     private static final String SALT_FILE = "hac.bin"; // stores salt for
                                                        // encryption
 
+    private final String dataDirectory;
     private final String saltPath;
     private final String beerFilePath;
     private final String userFilePath;
+    private final String userJournalPath;
     private final String currentBeerPath;
     // full paths for SALT_FILE, BEER_FILE and USER_FILE to be stored (includes
-    // file name), dependent on location of .jar file
-
-    private boolean beerDataReady = false;
+    // file name), dependent on location of .jar file unless a data directory is
+    // given explicitly
+
+    // data files are replaced atomically, keeping BACKUP_GENERATIONS old copies
+    private static final int BACKUP_GENERATIONS = 3;
+    private final DurableFile beerFile;
+    private final DurableFile userFile;
+    private final DurableFile beerSnapshot;
+    private final DurableFile userSnapshot;
+    // BEER_FILE and USER_FILE are stored as JSON or binary snapshots
+    private static final SnapshotFormat DEFAULT_SNAPSHOT_FORMAT = SnapshotFormat.JSON;
+    private static final String SNAPSHOT_PROPERTY = "snapshot";
+    private final SnapshotFormat format;
+    private final DurableFile currentBeerFile;
+    private final Object beerFileLock = new Object();
+    private final Object userFileLock = new Object();
+    // held for a whole rewrite of BEER_FILE/USER_FILE, including the log
+    // rotation around it, so that two rewrites cannot interleave
+
+    private volatile boolean beerDataReady = false;
+    private final WriteAheadLog voteLog; // votes made since BEER_FILE was written
+    private long voteLogRotations = 0; // guarded by voteLog
+    // beers added to and removed from the beer list are logged as well, so a
+    // beer voted for before BEER_FILE holds it is not lost on replay
+    private static final String BEER_ADDED = "+";
+    private static final String BEER_REMOVED = "-";
+    private final Set<String> loggedBeers = new HashSet<String>(); // guarded by
+                                                                   // voteLog
+    private long beerFileRotation = 0; // rotation written last, guarded by
+                                       // beerFileLock
+
+    // saves requested through saveBeerData(), saveUsers() and saveCurrentKeg()
+    // are written by a single background thread, at most once per
+    // SAVE_DELAY ms for each file
+    private static final long SAVE_DELAY = 250;
+    private final PersistenceService persistence = new PersistenceService(SAVE_DELAY);
 
     // constants for encryption
-    private static final int KEY_DERIVATION_ITERATION = 65536;
-    private static final int KEY_SIZE = 128;
-    private static final char[] PASSWORD = { 'z', 'e', 'r', 'o', 'c', 'l', 'i', 'e', 'n', 't' };
-    private static byte[] SALT;
-    private Cipher cipher;
-
-    private final Map<String, UserFlags> userData = new HashMap<String, UserFlags>();
+    private static final int DEFAULT_DECRYPT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final int USER_FILE_VERSION = 2; // users stored as hashes
+    // USER_FILE is rewritten once the journal holds more records than this or
+    // than there are users, whichever is larger
+    private static final int MIN_COMPACTION_RECORDS = 1000;
+    private byte[] salt;
+    private UserCrypto crypto; // key material derived once from salt
+    private final int decryptParallelism; // threads used to decrypt old USER_FILEs
+
+    // startup timing in ms, see getKeyDerivationTime() and getUserLoadTime()
+    private long keyDerivationTime = 0;
+    private long userLoadTime = 0;
+
+    private static final String USER_TABLE_FILE = "user_table.bin";
+    private final UserStore userData;
+    // keyed by the hash of each user string, see UserCrypto.hash(); held on
+    // the heap or, with SnapshotFormat.MAPPED, in USER_TABLE_FILE
+    private final byte[] userHash = new byte[UserCrypto.HASH_LENGTH];
+    // hash of the user passed to the current user method, guarded by this
+    private final UserJournal userJournal;
+    // changes made to userData since USER_FILE was last written
     private boolean userDataReady = false;
 
     /**
      * Assigns path names for data files and loads beer and user information
-     * into memory if available.
+     * into memory if available. Data files are kept in the data directory next
+     * to the .jar file of this program, in the format selected by the
+     * "snapshot" system property, see getSnapshotFormat().
      */
     public DataManager() {
-        saltPath = Util.getJarPath() + "data" + System.getProperty("file.separator") + SALT_FILE;
-        beerFilePath = Util.getJarPath() + "data" + System.getProperty("file.separator") + BEER_FILE;
-        userFilePath = Util.getJarPath() + "data" + System.getProperty("file.separator") + USER_FILE;
-        currentBeerPath = Util.getJarPath() + "data" + System.getProperty("file.separator") + CURRENT_BEER_FILE;
+        this(Util.getJarPath() + "data" + System.getProperty("file.separator"), DEFAULT_DECRYPT_PARALLELISM,
+                getSnapshotFormat(System.getProperty(SNAPSHOT_PROPERTY)));
+    }
 
-        try {
-            cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException e1) {
-            e1.printStackTrace();
+    /**
+     * Selects the SnapshotFormat described by spec:
+     * <ul>
+     * <li>null, "json" or anything not listed below stores JSON files.</li>
+     * <li>"binary" stores binary snapshots, see SnapshotFormat.BINARY.</li>
+     * <li>"mapped" keeps users in a memory-mapped table, see
+     * SnapshotFormat.MAPPED.</li>
+     * </ul>
+     */
+    public static SnapshotFormat getSnapshotFormat(String spec) {
+        if ("binary".equals(spec)) {
+            return SnapshotFormat.BINARY;
+        } else if ("mapped".equals(spec)) {
+            return SnapshotFormat.MAPPED;
+        } else {
+            return SnapshotFormat.JSON;
         }
+    }
+
+    /**
+     * Assigns path names for data files inside dataDirectory and loads beer and
+     * user information into memory if available.
+     * 
+     * @param dataDirectory
+     *            String giving the full path of the directory holding the data
+     *            files, including a system dependent file separator at the end.
+     */
+    public DataManager(String dataDirectory) {
+        this(dataDirectory, DEFAULT_DECRYPT_PARALLELISM);
+    }
+
+    /**
+     * Assigns path names for data files inside dataDirectory and loads beer and
+     * user information into memory if available. User entries of a USER_FILE in
+     * the old encrypted format are decrypted by up to decryptParallelism
+     * threads.
+     * 
+     * @param dataDirectory
+     *            String giving the full path of the directory holding the data
+     *            files, including a system dependent file separator at the end.
+     * @param decryptParallelism
+     *            int giving the number of threads used to decrypt an old
+     *            USER_FILE. A value of 1 or less decrypts on the calling
+     *            thread.
+     */
+    public DataManager(String dataDirectory, int decryptParallelism) {
+        this(dataDirectory, decryptParallelism, DEFAULT_SNAPSHOT_FORMAT);
+    }
+
+    /**
+     * Assigns path names for data files inside dataDirectory and loads beer and
+     * user information stored in the given format into memory if available.
+     * 
+     * @param dataDirectory
+     *            String giving the full path of the directory holding the data
+     *            files, including a system dependent file separator at the end.
+     * @param format
+     *            SnapshotFormat in which BEER_FILE and USER_FILE are stored.
+     */
+    public DataManager(String dataDirectory, SnapshotFormat format) {
+        this(dataDirectory, DEFAULT_DECRYPT_PARALLELISM, format);
+    }
+
+    /**
+     * Assigns path names for data files inside dataDirectory and loads beer and
+     * user information stored in the given format into memory if available.
+     * With SnapshotFormat.BINARY, JSON files are imported if no binary
+     * snapshot exists yet. User entries of a USER_FILE in the old encrypted
+     * format are decrypted by up to decryptParallelism threads.
+     * 
+     * @param dataDirectory
+     *            String giving the full path of the directory holding the data
+     *            files, including a system dependent file separator at the end.
+     * @param decryptParallelism
+     *            int giving the number of threads used to decrypt an old
+     *            USER_FILE. A value of 1 or less decrypts on the calling
+     *            thread.
+     * @param format
+     *            SnapshotFormat in which BEER_FILE and USER_FILE are stored.
+     * @throws UncheckedIOException
+     *             if format is SnapshotFormat.MAPPED and USER_TABLE_FILE
+     *             exists but cannot be opened.
+     */
+    public DataManager(String dataDirectory, int decryptParallelism, SnapshotFormat format) {
+        this.dataDirectory = dataDirectory;
+        this.decryptParallelism = decryptParallelism;
+        this.format = format;
+        saltPath = dataDirectory + SALT_FILE;
+        beerFilePath = dataDirectory + BEER_FILE;
+        userFilePath = dataDirectory + USER_FILE;
+        userJournalPath = dataDirectory + USER_JOURNAL_FILE;
+        currentBeerPath = dataDirectory + CURRENT_BEER_FILE;
+        beerFile = new DurableFile(beerFilePath, BACKUP_GENERATIONS);
+        userFile = new DurableFile(userFilePath, BACKUP_GENERATIONS);
+        beerSnapshot = new DurableFile(dataDirectory + BEER_SNAPSHOT_FILE, BACKUP_GENERATIONS);
+        userSnapshot = new DurableFile(dataDirectory + USER_SNAPSHOT_FILE, BACKUP_GENERATIONS);
+        currentBeerFile = new DurableFile(currentBeerPath, BACKUP_GENERATIONS);
 
         // check SALT_FILE
         if (!Util.checkFileExists(saltPath)) {
@@ -97,29 +236,82 @@ public class DataManager {
         } else {
             readSALT();
         }
+        try {
+            crypto = new UserCrypto(salt);
+            keyDerivationTime = crypto.getDerivationTime();
+        } catch (GeneralSecurityException e) {
+            e.printStackTrace();
+        }
 
         // check BEER_FILE
         if (!Util.checkFileExists(beerFilePath)) {
             createFileInDataDirectory(BEER_FILE);
         }
+        voteLog = new WriteAheadLog(dataDirectory + VOTE_LOG_FILE);
 
         // check CURRENT_BEER_FILE
         if (!Util.checkFileExists(currentBeerPath)) {
             createFileInDataDirectory(CURRENT_BEER_FILE);
         }
 
-        // check USER_FILE
-        if (!Util.checkFileExists(userFilePath)) {
+        // check USER_FILE and replay USER_JOURNAL_FILE over it
+        userJournal = new UserJournal(userJournalPath);
+        long start = System.nanoTime();
+        boolean migrated = false;
+        userData = createUserStore();
+
+        if (userData instanceof MappedUserTable && !((MappedUserTable) userData).isNew()) {
+            // the table already holds every user
+        } else if (format != SnapshotFormat.JSON && readSnapshot(userSnapshot, buffer -> {
+            userData.clear();
+            BinarySnapshot.decodeUsers(buffer, userData);
+        })) {
+            migrated = format == SnapshotFormat.MAPPED;
+        } else if (!userFile.exists()) {
+            // only when no generation exists, so a file lost in a crash is
+            // still recovered from its backups
             createFileInDataDirectory(USER_FILE);
-            userDataReady = false;
         } else {
-            readUsersFromFile();
+            // importing into another format is a migration too
+            migrated = readUsersFromFile() || format != SnapshotFormat.JSON;
+        }
+
+        try {
+            userJournal.replay(userData);
+            if (migrated) {
+                compactUsers();
+            }
+        } catch (IOException | JSONException e) {
+            e.printStackTrace();
         }
+
+        userDataReady = userData.size() > 0;
+        userLoadTime = (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+     * @return UserStore holding users in the format of this DataManager.
+     * @throws UncheckedIOException
+     *             if USER_TABLE_FILE cannot be opened. The table is the only
+     *             up to date copy of the users once they were imported, so
+     *             there is nothing to fall back on without losing changes.
+     */
+    private UserStore createUserStore() {
+        if (format == SnapshotFormat.MAPPED) {
+            try {
+                return new MappedUserTable(dataDirectory + USER_TABLE_FILE, UserCrypto.HASH_LENGTH);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open the user table; restore it from a backup", e);
+            }
+        }
+
+        return new HeapUserStore();
     }
 
     /**
      * Overwrites the current beer data to CURRENT_BEER_FILE. If the file does
-     * not exist a new file is created.
+     * not exist a new file is created. The file is replaced atomically, see
+     * DurableFile.
      * 
      * @param beer
      *            String, name of current beer
@@ -128,108 +320,171 @@ public class DataManager {
      * @throws JSONException
      * @throws IOException
      */
-    public synchronized void writeCurrentKeg(String beer, double tare) throws JSONException, IOException {
-        if (Util.checkFileExists(currentBeerPath)) {
-
-            JSONObject currentBeer = new JSONObject();
-            currentBeer.put("name", beer);
-            currentBeer.put("tare", tare);
-
-            FileWriter writer = new FileWriter(currentBeerPath, false);
-            writer.write(currentBeer.toString());
-            writer.flush();
-            writer.close();
-
-        } else {
-            createFileInDataDirectory(CURRENT_BEER_FILE);
+    public void writeCurrentKeg(String beer, double tare) throws JSONException, IOException {
+        JSONObject currentBeer = new JSONObject();
+        currentBeer.put("name", beer);
+        currentBeer.put("tare", tare);
 
-            JSONObject currentBeer = new JSONObject();
-            currentBeer.put("name", beer);
-            currentBeer.put("tare", tare);
-
-            FileWriter writer = new FileWriter(currentBeerPath, false);
-            writer.write(currentBeer.toString());
-            writer.flush();
-            writer.close();
-        }
+        currentBeerFile.write(currentBeer.toString());
     }
 
     /**
      * Reads CURRENT_BEER_FILE and returns an Object[] of .length() = 2 with the
      * String name of the beer at index 0 and the Double tare value for the beer
      * at index 1. If the file does not exist or is empty then the empty string
-     * and 30.0 are turned instead.
+     * and 30.0 are turned instead. A damaged file is recovered from its newest
+     * readable backup.
      * 
      * @return Object[] with the String beer name at index 0 and the Double tare
      *         value at index 1.
      */
-    public synchronized Object[] readCurrentKeg() {
+    public Object[] readCurrentKeg() {
         String beer = "";
         Double tare = 30.0;
         Object[] retval = new Object[2];
-       
-                
+
         try {
-            String jsonString = Util.readFileToString(currentBeerPath);
-            if (jsonString == null) {
-                retval[0] = beer;
-                retval[1] = tare; 
-                return retval;
+            JSONObject currentBeer = readJsonFile(currentBeerFile);
+            if (currentBeer != null) {
+                beer = currentBeer.getString("name");
+                tare = currentBeer.getDouble("tare");
             }
 
-            JSONObject currentBeer = (JSONObject) new JSONTokener(jsonString).nextValue();
-            beer = currentBeer.getString("name");
-            tare = currentBeer.getDouble("tare");
-
-        } catch (IOException | JSONException e) {
+        } catch (JSONException e) {
             e.printStackTrace();
         }
-        
+
         retval[0] = beer;
-        retval[1] = tare; 
+        retval[1] = tare;
 
         return retval;
     }
 
     /**
-     * Sets the cipher into encryption mode. Once set the cipher may be used to
-     * encrypt as many items as needed.
+     * Reads and parses the newest generation of file that holds a complete
+     * JSON object. Generations that are missing, empty or cannot be parsed,
+     * such as one cut short by a crash, are skipped.
+     * 
+     * @return JSONObject read from file or null if no generation of file could
+     *         be read.
      */
-    private void setCipherEncrypt() {
-        try {
-            SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-            KeySpec spec = new PBEKeySpec(PASSWORD, SALT, KEY_DERIVATION_ITERATION, KEY_SIZE);
-            SecretKey tmpKey = factory.generateSecret(spec);
-            SecretKey secretKey = new SecretKeySpec(tmpKey.getEncoded(), "AES");
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+    private JSONObject readJsonFile(DurableFile file) {
+        for (int generation = 0; generation <= file.getGenerations(); generation++) {
+            try {
+                String jsonString = file.readGeneration(generation);
+                if (jsonString == null) {
+                    continue;
+                }
 
-        } catch (InvalidKeyException | NoSuchAlgorithmException | InvalidKeySpecException e) {
-            e.printStackTrace();
+                Object value = new JSONTokener(jsonString).nextValue();
+                if (value instanceof JSONObject) {
+                    if (generation > 0) {
+                        System.out.println("Recovered " + file.getPath() + " from backup " + generation);
+                    }
+                    return (JSONObject) value;
+                }
+
+            } catch (IOException | JSONException e) {
+                e.printStackTrace();
+            }
         }
+
+        return null;
     }
 
     /**
-     * Sets the cipher to decryption mode. Once set the cipher may only be used
-     * to decrpyt the one item that corresponds the the initialization vector,
-     * iv. The initialization vector is generated upon encryption of the item
-     * and is required to decrypt that same item.
+     * Parses the newest generation of file that holds a complete JSON document
+     * with parser. Generations that are missing, empty or cannot be parsed,
+     * such as one cut short by a crash, are skipped; parser must therefore
+     * discard anything read from an earlier generation when it is called
+     * again.
      * 
-     * @param iv
-     *            byte[] giving the initialization vector generated upon
-     *            encryption of its corresponding item.
+     * @return true if a generation of file was parsed and false if none could
+     *         be.
      */
-    private void setCipherDecrypt(byte[] iv) {
-        try {
-            SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-            KeySpec spec = new PBEKeySpec(PASSWORD, SALT, KEY_DERIVATION_ITERATION, KEY_SIZE);
-            SecretKey tmpKey = factory.generateSecret(spec);
-            SecretKey secretKey = new SecretKeySpec(tmpKey.getEncoded(), "AES");
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(iv));
-
-        } catch (InvalidKeyException | InvalidAlgorithmParameterException | InvalidKeySpecException
-                | NoSuchAlgorithmException e) {
-            e.printStackTrace();
+    private boolean readJsonStream(DurableFile file, JsonParser parser) {
+        for (int generation = 0; generation <= file.getGenerations(); generation++) {
+            try (FileChannel channel = file.openGeneration(generation)) {
+                if (channel == null) {
+                    continue;
+                }
+
+                JsonStreamReader json = new JsonStreamReader(channel);
+                parser.parse(json);
+                json.endDocument();
+
+                if (generation > 0) {
+                    System.out.println("Recovered " + file.getPath() + " from backup " + generation);
+                }
+                return true;
+
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Loads a data file from a JsonStreamReader, see readJsonStream().
+     */
+    private interface JsonParser {
+        void parse(JsonStreamReader json) throws IOException;
+    }
+
+    /**
+     * Memory-maps the newest generation of file that holds a complete binary
+     * snapshot and decodes it with parser. Generations that are missing,
+     * empty or damaged are skipped as in readJsonStream().
+     * 
+     * @return true if a generation of file was decoded and false if none
+     *         could be.
+     */
+    private boolean readSnapshot(DurableFile file, SnapshotParser parser) {
+        for (int generation = 0; generation <= file.getGenerations(); generation++) {
+            try (FileChannel channel = file.openGeneration(generation)) {
+                if (channel == null) {
+                    continue;
+                }
+
+                parser.parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+
+                if (generation > 0) {
+                    System.out.println("Recovered " + file.getPath() + " from backup " + generation);
+                }
+                return true;
+
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
+
+        return false;
+    }
+
+    /**
+     * Loads a data file from a binary snapshot, see readSnapshot().
+     */
+    private interface SnapshotParser {
+        void parse(ByteBuffer snapshot) throws IOException;
+    }
+
+    /**
+     * @return time in ms taken to derive the encryption key when this
+     *         DataManager was created.
+     */
+    public long getKeyDerivationTime() {
+        return keyDerivationTime;
+    }
+
+    /**
+     * @return time in ms taken to read USER_FILE when this
+     *         DataManager was created, excluding the one-off key derivation.
+     *         Is 0 if USER_FILE did not exist.
+     */
+    public long getUserLoadTime() {
+        return userLoadTime;
     }
 
     /**
@@ -264,11 +519,11 @@ public class DataManager {
      * @return true if the user did not already exist and was successfully added
      *         to the buffer and false if otherwise.
      */
-    public boolean addUser(String user) {
-        if (!checkUserExists(user)) {
-            userData.put(user, new UserFlags("", false, false));
-            // add temporary empty string for user's IV. this will be generated
-            // when the user string is encrypted and written to file
+    public synchronized boolean addUser(String user) {
+        crypto.hash(user, userHash);
+
+        if (userData.add(userHash, 0, 0)) {
+            userJournal.recordAdd(userHash);
             return true;
         } else {
             return false;
@@ -282,8 +537,9 @@ public class DataManager {
      *            String giving the user to be identified.
      * @return true if the user exists and false if otherwise.
      */
-    public boolean checkUserExists(String user) {
-        return userData.keySet().contains(user);
+    public synchronized boolean checkUserExists(String user) {
+        crypto.hash(user, userHash);
+        return userData.getFlags(userHash) >= 0;
     }
 
     /**
@@ -294,12 +550,10 @@ public class DataManager {
      * @return true if the user exists and has administrative privileges and
      *         false if otherwise or the user does not exist.
      */
-    public boolean checkAdmin(String user) {
-        if (checkUserExists(user)) {
-            return userData.get(user).isAdmin();
-        } else {
-            return false;
-        }
+    public synchronized boolean checkAdmin(String user) {
+        crypto.hash(user, userHash);
+        int flags = userData.getFlags(userHash);
+        return flags >= 0 && (flags & UserStore.ADMIN) != 0;
     }
 
     /**
@@ -310,12 +564,10 @@ public class DataManager {
      * @return true if the user exists and has already voted and false if
      *         otherwise or if the user has not voted.
      */
-    public boolean checkVoted(String user) {
-        if (checkUserExists(user)) {
-            return userData.get(user).hasVoted();
-        } else {
-            return false;
-        }
+    public synchronized boolean checkVoted(String user) {
+        crypto.hash(user, userHash);
+        int epoch = userData.getVoteEpoch(userHash);
+        return epoch != 0 && epoch == userData.getCurrentEpoch();
     }
 
     /**
@@ -328,328 +580,631 @@ public class DataManager {
      * @param value
      *            boolean giving value to set as administrative privileges.
      */
-    public void setAdmin(String user, boolean value) {
-        if (checkUserExists(user)) {
-            userData.get(user).setAdmin(value);
-        } else {
-            userData.put(user, new UserFlags("", value, false));
-        }
+    public synchronized void setAdmin(String user, boolean value) {
+        crypto.hash(user, userHash);
+        userData.setFlag(userHash, UserStore.ADMIN, value);
+        userJournal.recordAdmin(userHash, value);
     }
 
     /**
      * Sets the given user's voted status to 'value.' If the user did not
      * already exist then a new user is added with voted set to 'value' and
-     * admin set to false.
+     * admin set to false. A user who votes is recorded as having last voted in
+     * the current voting epoch; setting 'value' to false forgets the epoch
+     * the user last voted in.
      * 
      * @param user
      *            String giving user to be identified.
      * @param value
      *            boolean giving value to set as user's voted status.
      */
-    public void setVoted(String user, boolean value) {
-        if (checkUserExists(user)) {
-            userData.get(user).setVoted(value);
-        } else {
-            userData.put(user, new UserFlags("", false, value));
-        }
+    public synchronized void setVoted(String user, boolean value) {
+        crypto.hash(user, userHash);
+        int epoch = value ? userData.getCurrentEpoch() : 0;
+        userData.setVoteEpoch(userHash, epoch);
+        userJournal.recordVoteEpoch(userHash, epoch);
     }
 
     /**
-     * Resets all users voted status to false.
+     * Resets all users voted status to false by starting a new voting epoch,
+     * e.g. when a new keg is tapped. Takes the same time however many users
+     * there are; each user keeps the epoch they last voted in, see
+     * getLastVoteEpoch().
      */
-    public void resetVotes() {
-        for (String user : userData.keySet()) {
-            setVoted(user, false);
-        }
+    public synchronized void resetVotes() {
+        int epoch = userData.getCurrentEpoch() + 1;
+        userData.setCurrentEpoch(epoch);
+        userJournal.recordNewEpoch(epoch);
     }
 
     /**
-     * Overwrites USER_FILE with any user data that is contained in the user
-     * buffer, userData. If USER_FILE does not exist then a new file is created
-     * and written to. All user identification strings are encrypted before
-     * being written to the file.
+     * @return the current voting epoch. It starts at 1 and is increased by
+     *         every call to resetVotes().
+     */
+    public synchronized int getVoteEpoch() {
+        return userData.getCurrentEpoch();
+    }
+
+    /**
+     * @param user
+     *            String giving the user to be identified.
+     * @return the voting epoch in which the given user last voted, or 0 if the
+     *         user never voted or does not exist.
+     */
+    public synchronized int getLastVoteEpoch(String user) {
+        crypto.hash(user, userHash);
+        return userData.getVoteEpoch(userHash);
+    }
+
+    /**
+     * Makes sure every change made to the user buffer, userData, is on disk.
+     * Changes are written ahead to USER_JOURNAL_FILE as they are made so this
+     * only waits for the last of them; the cost of a save depends on the
+     * number of changes rather than the number of users. Once the journal
+     * grows larger than the user buffer it is compacted into USER_FILE, see
+     * compactUsers().
      * 
      * @throws IOException
      * @throws JSONException
      */
-    public synchronized void writeUsersToFile() throws JSONException, IOException {
-        setCipherEncrypt();
+    public void writeUsersToFile() throws JSONException, IOException {
+        boolean compact;
+        synchronized (this) {
+            compact = userJournal.size() > Math.max(MIN_COMPACTION_RECORDS, userData.size());
+        }
 
-        if (Util.checkFileExists(userFilePath)) {
+        if (compact) {
+            compactUsers();
+        }
+        userJournal.flush();
 
-            if (userData.keySet().size() > 0) {
-                JSONObject jsonFile = new JSONObject();
-                JSONArray dataArray = new JSONArray();
+        synchronized (this) {
+            userDataReady = userData.size() > 0;
+        }
+    }
 
-                for (String userID : userData.keySet()) {
-                    JSONObject user = new JSONObject();
-                    String[] encrypted = encrypt(userID);
-                    user.put("id", encrypted[0]);
-                    user.put("iv", encrypted[1]);
-                    user.put("admin", userData.get(userID).isAdmin());
-                    user.put("voted", userData.get(userID).hasVoted());
-                    dataArray.put(user);
+    /**
+     * Overwrites USER_FILE with any user data that is contained in the user
+     * buffer, userData, and then clears USER_JOURNAL_FILE. If USER_FILE does
+     * not exist then a new file is created and written to. Only the hash of
+     * each user identification string is written to the file. The user buffer
+     * is only locked while it is copied; the file is replaced atomically
+     * afterwards, see DurableFile. With SnapshotFormat.MAPPED the user table
+     * is forced to disk instead; it is never rewritten. Happens on its own
+     * once the journal grows large, see writeUsersToFile().
+     * 
+     * @throws IOException
+     * @throws JSONException
+     */
+    public void compactUsers() throws JSONException, IOException {
+        synchronized (userFileLock) {
+            JSONObject jsonFile = null;
+            ByteBuffer snapshot = null;
+
+            boolean mapped = userData instanceof MappedUserTable;
+
+            synchronized (this) {
+                if (mapped) {
+                    // changes are already in the table
+                } else if (format == SnapshotFormat.JSON) {
+                    jsonFile = usersToJson();
+                } else {
+                    snapshot = BinarySnapshot.encodeUsers(userData);
                 }
+                userJournal.startCompaction();
+            }
 
-                jsonFile.put("users", dataArray);
-                FileWriter writer = new FileWriter(userFilePath, false);
-                writer.write(jsonFile.toString());
-                writer.flush();
-                writer.close();
-
-                userDataReady = true;
+            if (mapped) {
+                userData.sync();
+            } else if (snapshot != null) {
+                userSnapshot.write(snapshot);
             } else {
-                File file = new File(userFilePath);
-                file.delete();
-                userDataReady = false;
+                userFile.write(jsonFile.toString());
             }
 
-        } else {
-            createFileInDataDirectory(USER_FILE);
+            userJournal.clear();
+        }
+    }
 
-            if (userData.keySet().size() > 0) {
-                JSONObject jsonFile = new JSONObject();
-                JSONArray dataArray = new JSONArray();
-
-                for (String userID : userData.keySet()) {
-                    JSONObject user = new JSONObject();
-                    String[] encrypted = encrypt(userID);
-                    user.put("id", encrypted[0]);
-                    user.put("iv", encrypted[1]);
-                    user.put("admin", userData.get(userID).isAdmin());
-                    user.put("voted", userData.get(userID).hasVoted());
-                    dataArray.put(user);
-                }
+    /**
+     * Copies the user buffer, userData, into the JSON layout of USER_FILE. Must
+     * be called while holding the lock of this DataManager.
+     */
+    private JSONObject usersToJson() throws JSONException, IOException {
+        JSONObject jsonFile = new JSONObject();
+        JSONArray dataArray = new JSONArray();
+        List<String> hashes = new ArrayList<String>();
+        List<UserFlags> flags = new ArrayList<UserFlags>();
+        Base64.Encoder encoder = Base64.getEncoder();
+        int currentEpoch = userData.getCurrentEpoch();
+
+        userData.forEach((hash, userFlags, voteEpoch) -> {
+            hashes.add(encoder.encodeToString(hash));
+            flags.add(new UserFlags((userFlags & UserStore.ADMIN) != 0, voteEpoch));
+        });
+
+        for (int i = 0; i < hashes.size(); i++) {
+            JSONObject user = new JSONObject();
+            user.put("hash", hashes.get(i));
+            user.put("admin", flags.get(i).isAdmin());
+            user.put("voted", flags.get(i).getVoteEpoch() == currentEpoch);
+            user.put("voteEpoch", flags.get(i).getVoteEpoch());
+            dataArray.put(user);
+        }
 
-                jsonFile.put("users", dataArray);
-                FileWriter writer = new FileWriter(userFilePath);
-                writer.write(jsonFile.toString());
-                writer.flush();
-                writer.close();
+        jsonFile.put("version", USER_FILE_VERSION);
+        jsonFile.put("epoch", currentEpoch);
+        jsonFile.put("users", dataArray);
+        return jsonFile;
+    }
 
-                userDataReady = true;
-            } else {
-                userDataReady = false;
-            }
+    /**
+     * Writes beerRatings and the user buffer to BEER_FILE and USER_FILE in JSON
+     * format, whatever format this DataManager stores them in, e.g. to move
+     * data from a binary snapshot into another program. The JSON files are not
+     * read again while binary snapshots exist.
+     * 
+     * @param beerRatings
+     *            Map<String, Integer> of beer names to votes.
+     * @throws JSONException
+     * @throws IOException
+     */
+    public void exportJson(Map<String, Integer> beerRatings) throws JSONException, IOException {
+        JSONObject users;
+        synchronized (this) {
+            users = usersToJson();
         }
+
+        beerFile.write(beersToJson(beerRatings).toString());
+        userFile.write(users.toString());
     }
 
     /**
-     * Reads user data from USER_FILE into the user buffer, userData. Since user
-     * strings contained in USER_FILE are encrypted they are decrpyted before
-     * being loaded into memory.
+     * Reads user data from USER_FILE into the user buffer, userData. The file
+     * is read one token at a time, see JsonStreamReader. Entries written in
+     * the old format hold the encrypted user string instead of its hash;
+     * these are decrypted, across decryptParallelism threads, and hashed
+     * before being loaded into memory.
+     * 
+     * @return true if USER_FILE was written in the old format and should be
+     *         rewritten so that the migration only happens once.
      */
-    private void readUsersFromFile() {
-
-        try {
-            String jsonString = Util.readFileToString(userFilePath);
-            if (jsonString == null) {
-                userDataReady = false;
-                return;
+    private boolean readUsersFromFile() {
+        List<String> encryptedIds = new ArrayList<String>();
+        List<String> ivs = new ArrayList<String>();
+        List<UserFlags> encryptedFlags = new ArrayList<UserFlags>();
+        int[] version = new int[1];
+
+        boolean read = readJsonStream(userFile, json -> {
+            userData.clear();
+            encryptedIds.clear();
+            ivs.clear();
+            encryptedFlags.clear();
+            version[0] = 1;
+
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (name.equals("version")) {
+                    version[0] = json.nextInt();
+                } else if (name.equals("epoch")) {
+                    userData.setCurrentEpoch(json.nextInt());
+                } else if (name.equals("users")) {
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        readUser(json, encryptedIds, ivs, encryptedFlags);
+                    }
+                    json.endArray();
+                } else {
+                    json.skipValue();
+                }
             }
+            json.endObject();
+        });
 
-            userDataReady = false;
-
-            JSONObject obj = (JSONObject) new JSONTokener(jsonString).nextValue();
-            JSONArray users = obj.getJSONArray("users");
+        if (!read) {
+            return false;
+        }
 
-            for (int i = 0; i < users.length(); i++) {
-                userDataReady = true;
-                JSONObject user = users.getJSONObject(i);
-                boolean admin = user.getBoolean("admin");
-                boolean voted = user.getBoolean("voted");
+        String[] ids = decryptUsers(encryptedIds.toArray(new String[encryptedIds.size()]),
+                ivs.toArray(new String[ivs.size()]));
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != null) {
+                crypto.hash(ids[i], userHash);
+                putUser(userHash, encryptedFlags.get(i));
+            }
+        }
 
-                String id = decrypt(user.getString("id"), user.getString("iv"));
+        return version[0] < USER_FILE_VERSION || ids.length > 0;
+    }
 
-                userData.put(id, new UserFlags(user.getString("iv"), admin, voted));
+    /**
+     * Reads one entry of the "users" array of USER_FILE. An entry holding a
+     * hash is put straight into userData; an entry in the old format is added
+     * to the lists of entries to decrypt.
+     */
+    private void readUser(JsonStreamReader json, List<String> encryptedIds, List<String> ivs,
+            List<UserFlags> encryptedFlags) throws IOException {
+        String hash = null;
+        String id = null;
+        String iv = null;
+        boolean admin = false;
+        boolean voted = false;
+        int voteEpoch = 0;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (name.equals("hash")) {
+                hash = json.nextString();
+            } else if (name.equals("id")) {
+                id = json.nextString();
+            } else if (name.equals("iv")) {
+                iv = json.nextString();
+            } else if (name.equals("admin")) {
+                admin = json.nextBoolean();
+            } else if (name.equals("voted")) {
+                voted = json.nextBoolean();
+            } else if (name.equals("voteEpoch")) {
+                voteEpoch = json.nextInt();
+            } else {
+                json.skipValue();
             }
+        }
+        json.endObject();
 
-        } catch (IOException | JSONException e) {
-            userDataReady = false;
-            e.printStackTrace();
+        if (hash != null) {
+            byte[] bytes = decodeHash(hash);
+            if (bytes != null) {
+                putUser(bytes, new UserFlags(admin, voteEpoch));
+            }
+        } else if (id != null && iv != null) {
+            encryptedIds.add(id);
+            ivs.add(iv);
+            // the old format only holds the voted flag
+            encryptedFlags.add(new UserFlags(admin, voted ? UserStore.FIRST_EPOCH : 0));
         }
     }
 
     /**
-     * Encrypts the given string into a byte[] which is then encoded using
-     * base64 into string format for easier storage. During encryption an
-     * initialization vector, a byte[], is generated. This byte[] is unique to
-     * the encrypted string and is required upon the strings decrpytion. The
-     * initialization vector is also encoded into string format using base64
-     * before being returned.
-     * 
-     * @param plainText
-     *            String to be encrypted. Must not be the empty string.
-     * @return String[] of length 2 containing the encrypted plainText at index
-     *         0 and its corresponding initialization vector at index 1.
+     * @return byte[] holding the hash encoded in hash, or null if it is not
+     *         the base64 encoding of a hash made by UserCrypto.
      */
-    private String[] encrypt(String plainText) {
-        byte[] ciphertext = null;
-        byte[] iv = null;
-        String[] encrypted = new String[2];
-
+    private static byte[] decodeHash(String hash) {
         try {
-            AlgorithmParameters params = cipher.getParameters();
-            iv = params.getParameterSpec(IvParameterSpec.class).getIV();
-            ciphertext = cipher.doFinal(plainText.getBytes("UTF-8"));
-
-        } catch (IllegalBlockSizeException | BadPaddingException | UnsupportedEncodingException
-                | InvalidParameterSpecException e) {
-            e.printStackTrace();
+            byte[] bytes = Base64.getDecoder().decode(hash);
+            return bytes.length == UserCrypto.HASH_LENGTH ? bytes : null;
+        } catch (IllegalArgumentException e) {
+            return null;
         }
+    }
 
-        String cipherString = Base64.getEncoder().encodeToString(ciphertext);
-        String ivString = Base64.getEncoder().encodeToString(iv);
-
-        encrypted[0] = cipherString;
-        encrypted[1] = ivString;
-
-        return encrypted;
+    /**
+     * Puts the user with the given hash and flags into userData, replacing the
+     * flags of a user already there.
+     */
+    private void putUser(byte[] hash, UserFlags flags) {
+        if (!userData.add(hash, flags.isAdmin() ? UserStore.ADMIN : 0, flags.getVoteEpoch())) {
+            userData.setFlag(hash, UserStore.ADMIN, flags.isAdmin());
+            userData.setVoteEpoch(hash, flags.getVoteEpoch());
+        }
     }
 
     /**
-     * Decrypts the given string using the provided initialization vector.
+     * Decrypts every id in encrypted, the ids of a USER_FILE written in the
+     * old encrypted format. With a decryptParallelism greater than 1 the ids
+     * are split across a ForkJoinPool of that size.
      * 
      * @param encrypted
-     *            String to be decrypted. Musy not be the empty string.
-     * @param iv
-     *            String giving the initialization vector to be used during the
-     *            decryption process.
-     * @return the decrypted String of encrypted.
+     *            String[] of encrypted user ids read from USER_FILE.
+     * @param ivs
+     *            String[] holding the initialization vector of encrypted[i] at
+     *            index i.
+     * @return String[] holding the decrypted id of encrypted[i] at index i, or
+     *         null if that id could not be decrypted.
      */
-    private String decrypt(String encrypted, String iv) {
-        byte[] ivBytes = null;
-        byte[] encryptedBytes = null;
-        String decrypted = null;
+    private String[] decryptUsers(String[] encrypted, String[] ivs) {
+        String[] ids = new String[encrypted.length];
+        UserDecryptTask task = new UserDecryptTask(encrypted, ivs, ids, crypto, 0, encrypted.length);
 
-        try {
-            ivBytes = Base64.getDecoder().decode(iv.getBytes("UTF-8"));
-            encryptedBytes = Base64.getDecoder().decode(encrypted.getBytes("UTF-8"));
-            setCipherDecrypt(ivBytes);
-            decrypted = new String(cipher.doFinal(encryptedBytes), "UTF-8");
-        } catch (UnsupportedEncodingException | IllegalBlockSizeException | BadPaddingException e1) {
-            e1.printStackTrace();
+        if (decryptParallelism <= 1) {
+            task.decryptRange();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(decryptParallelism);
+            try {
+                pool.invoke(task);
+            } finally {
+                pool.shutdown();
+            }
         }
 
-        return decrypted;
+        return ids;
+    }
+
+    /**
+     * Records that beer now has the given number of votes in VOTE_LOG_FILE. The
+     * record is written ahead on a background thread and reaches the disk
+     * within milliseconds, so a vote survives a power cut even if BEER_FILE is
+     * not written again before it. Returns immediately.
+     * 
+     * @param beer
+     *            String giving the name of the beer voted for.
+     * @param votes
+     *            int giving the number of votes beer has after the vote.
+     */
+    public void logVote(String beer, int votes) {
+        voteLog.append(votes + " " + beer);
     }
 
     /**
      * This method updates BEER_FILE with the most recent data stored in
-     * beerRatings. BEER_FILE is completely overwritten during the process. If
-     * the JSON file cannot be found then a new file is created in the data
-     * directory.
+     * beerRatings. BEER_FILE is completely overwritten during the process and
+     * replaced atomically, see DurableFile. If the JSON file cannot be found
+     * then a new file is created in the data directory. Votes logged before
+     * this call are discarded from VOTE_LOG_FILE once BEER_FILE has been
+     * written. Blocks until the file is written; see saveBeerData() for a
+     * version that returns immediately.
      * 
      * @throws JSONException
      *             if data could not be written in JSON format.
      * @throws IOException
      *             if data could not be written.
      */
-
     public void writeBeerData(Map<String, Integer> beerRatings) throws JSONException, IOException {
-        if (Util.checkFileExists(beerFilePath)) {
+        writeBeerFile(beerRatings, rotateVoteLog(beerRatings));
+    }
 
-            if (beerRatings.keySet().size() > 0) {
-                JSONObject jsonToWrite = new JSONObject();
-                JSONArray jsonBeerList = new JSONArray();
+    /**
+     * Queues beerRatings to be written to BEER_FILE by the background
+     * persistence thread and returns immediately. Requests made within
+     * SAVE_DELAY ms of the first one are coalesced into one write of the
+     * newest beerRatings. Must be called from the thread that logs votes, see
+     * logVote(), so that every vote logged before this call is in beerRatings.
+     * 
+     * @param beerRatings
+     *            Map<String, Integer> of beer names to votes. Must not be
+     *            modified after this call.
+     */
+    public void saveBeerData(Map<String, Integer> beerRatings) {
+        long rotation = rotateVoteLog(beerRatings);
+        persistence.submit(BEER_FILE, () -> writeBeerFile(beerRatings, rotation));
+    }
 
-                for (String beerName : beerRatings.keySet()) {
-                    JSONObject jsonBeer = new JSONObject();
-                    jsonBeer.put(beerName, beerRatings.get(beerName));
-                    jsonBeerList.put(jsonBeer);
+    /**
+     * Logs the beers added to or removed from the beer list since the last
+     * call, then moves every record logged so far aside, to be discarded once
+     * a BEER_FILE holding beerRatings has been written. Until then a crash
+     * replays the added beers along with the votes for them.
+     * 
+     * @return long numbering this rotation.
+     */
+    private long rotateVoteLog(Map<String, Integer> beerRatings) {
+        synchronized (voteLog) {
+            for (String beer : beerRatings.keySet()) {
+                if (loggedBeers.add(beer)) {
+                    voteLog.append(BEER_ADDED + " " + beer);
+                }
+            }
+            for (Iterator<String> beers = loggedBeers.iterator(); beers.hasNext();) {
+                String beer = beers.next();
+                if (!beerRatings.containsKey(beer)) {
+                    beers.remove();
+                    voteLog.append(BEER_REMOVED + " " + beer);
                 }
+            }
 
-                jsonToWrite.put("beers", jsonBeerList);
-                FileWriter writer = new FileWriter(beerFilePath, false);
-                writer.write(jsonToWrite.toString());
-                writer.flush();
-                writer.close();
+            voteLog.rotate();
+            return ++voteLogRotations;
+        }
+    }
 
-                beerDataReady = true;
+    /**
+     * Writes beerRatings, which holds every vote rotated out of VOTE_LOG_FILE
+     * by the given rotation, to BEER_FILE. Does nothing if a newer rotation has
+     * already been written. The rotated votes are only discarded if no newer
+     * rotation has been made since, as those would be discarded with them.
+     */
+    private void writeBeerFile(Map<String, Integer> beerRatings, long rotation) throws JSONException, IOException {
+        synchronized (beerFileLock) {
+            if (rotation < beerFileRotation) {
+                return;
+            }
+
+            if (format != SnapshotFormat.JSON) {
+                beerSnapshot.write(BinarySnapshot.encodeBeers(beerRatings));
             } else {
-                File file = new File(beerFilePath);
-                file.delete();
-                beerDataReady = false;
+                beerFile.write(beersToJson(beerRatings).toString());
             }
+            beerFileRotation = rotation;
+            beerDataReady = beerRatings.keySet().size() > 0;
 
-        } else {
-            createFileInDataDirectory(BEER_FILE);
+            synchronized (voteLog) {
+                if (rotation == voteLogRotations) {
+                    voteLog.discardRotated();
+                }
+            }
+        }
+    }
 
-            if (beerRatings.keySet().size() > 0) {
-                JSONObject jsonToWrite = new JSONObject();
-                JSONArray jsonBeerList = new JSONArray();
+    /**
+     * @return JSONObject holding beerRatings in the layout of BEER_FILE.
+     */
+    private static JSONObject beersToJson(Map<String, Integer> beerRatings) throws JSONException {
+        JSONObject jsonToWrite = new JSONObject();
+        JSONArray jsonBeerList = new JSONArray();
+
+        for (String beerName : beerRatings.keySet()) {
+            JSONObject jsonBeer = new JSONObject();
+            jsonBeer.put(beerName, beerRatings.get(beerName));
+            jsonBeerList.put(jsonBeer);
+        }
 
-                for (String beerName : beerRatings.keySet()) {
-                    JSONObject jsonBeer = new JSONObject();
-                    jsonBeer.put(beerName, beerRatings.get(beerName));
-                    jsonBeerList.put(jsonBeer);
-                }
+        jsonToWrite.put("beers", jsonBeerList);
+        return jsonToWrite;
+    }
 
-                jsonToWrite.put("beers", jsonBeerList);
-                FileWriter writer = new FileWriter(beerFilePath);
-                writer.write(jsonToWrite.toString());
-                writer.flush();
-                writer.close();
+    /**
+     * Queues a call to writeUsersToFile() on the background persistence thread
+     * and returns immediately.
+     */
+    public void saveUsers() {
+        persistence.submit(USER_FILE, this::writeUsersToFile);
+    }
 
-                beerDataReady = true;
-            } else {
-                beerDataReady = false;
-            }
+    /**
+     * Queues beer and tare to be written to CURRENT_BEER_FILE by the
+     * background persistence thread and returns immediately, see
+     * writeCurrentKeg().
+     * 
+     * @param beer
+     *            String, name of current beer
+     * @param tare
+     *            double, tare value of current beer.
+     */
+    public void saveCurrentKeg(String beer, double tare) {
+        persistence.submit(CURRENT_BEER_FILE, () -> writeCurrentKeg(beer, tare));
+    }
+
+    /**
+     * Writes every queued save without waiting for the save delay and
+     * blocks until they are on disk. Should be called before the program
+     * exits.
+     */
+    public void flushSaves() {
+        persistence.flush();
+    }
 
+    /**
+     * Writes every queued save, then closes the logs of votes and user changes
+     * and stops their writer threads. Should be called once, when the program
+     * exits; no data may be changed afterwards.
+     */
+    public void close() {
+        flushSaves();
+
+        synchronized (this) {
+            userJournal.close();
+        }
+        try {
+            voteLog.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
+    /**
+     * @return String giving the full path of the directory holding the data
+     *         files, including a system dependent file separator at the end.
+     */
+    public String getDataDirectory() {
+        return dataDirectory;
+    }
+
+    /**
+     * @return PersistenceService writing queued saves, for its queue depth and
+     *         write latency statistics.
+     */
+    public PersistenceService getPersistenceService() {
+        return persistence;
+    }
+
     /**
      * Reads and parses BEER_FILE and loads the data into beerRatings and beers.
-     * Does not modify BEER_FILE in any way.
+     * The file is read one token at a time, see JsonStreamReader. Votes logged
+     * to VOTE_LOG_FILE after BEER_FILE was last written are then applied on
+     * top. Does not modify BEER_FILE in any way.
      */
     public synchronized Map<String, Integer> readBeerData() {
         Map<String, Integer> beerRatings = new HashMap<String, Integer>();
 
-        try {
-            String jsonString = Util.readFileToString(beerFilePath);
-            if (jsonString == null) {
-                beerDataReady = false;
-                return beerRatings;
+        boolean read = format != SnapshotFormat.JSON && readSnapshot(beerSnapshot, buffer -> {
+            beerRatings.clear();
+            BinarySnapshot.decodeBeers(buffer, beerRatings);
+        });
+
+        read = read || readJsonStream(beerFile, json -> {
+            beerRatings.clear();
+
+            json.beginObject();
+            while (json.hasNext()) {
+                if (json.nextName().equals("beers")) {
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        json.beginObject();
+                        while (json.hasNext()) {
+                            String beerName = json.nextName();
+                            beerRatings.put(beerName, json.nextInt());
+                        }
+                        json.endObject();
+                    }
+                    json.endArray();
+                } else {
+                    json.skipValue();
+                }
             }
+            json.endObject();
+        });
 
-            beerDataReady = false;
+        try {
+            replayVotes(beerRatings);
+            // beers added since BEER_FILE was written are replayed too
+            beerDataReady = !beerRatings.isEmpty();
+        } catch (IOException e) {
+            e.printStackTrace();
+            beerDataReady = read && !beerRatings.isEmpty();
+        }
 
-            JSONObject obj = (JSONObject) new JSONTokener(jsonString).nextValue();
-            JSONArray jsonBeers = obj.getJSONArray("beers");
+        synchronized (voteLog) {
+            loggedBeers.clear();
+            loggedBeers.addAll(beerRatings.keySet());
+        }
+        return beerRatings;
+    }
 
-            for (int i = 0; i < jsonBeers.length(); i++) {
-                JSONObject nextBeer = jsonBeers.getJSONObject(i);
-                String beerName = nextBeer.keys().next().toString();
+    /**
+     * Applies every record in VOTE_LOG_FILE to beerRatings in the order they
+     * were logged. Beers added or removed since BEER_FILE was written are
+     * added with no votes or removed. Each vote holds the total number of
+     * votes of its beer so the last vote for a beer wins; votes for beers not
+     * in beerRatings, i.e. removed ones, are ignored.
+     */
+    private void replayVotes(Map<String, Integer> beerRatings) throws IOException {
+        for (String record : voteLog.readRecords()) {
+            int split = record.indexOf(' ');
+            if (split < 0) {
+                continue;
+            }
 
-                beerRatings.put(beerName, nextBeer.getInt(beerName));
-                // beers.add(beerName);
-                beerDataReady = true;
+            String beerName = record.substring(split + 1);
+            String type = record.substring(0, split);
+            if (type.equals(BEER_ADDED)) {
+                beerRatings.putIfAbsent(beerName, 0);
+                continue;
+            } else if (type.equals(BEER_REMOVED)) {
+                beerRatings.remove(beerName);
+                continue;
             }
 
-        } catch (IOException | JSONException e) {
-            e.printStackTrace();
-            beerDataReady = false;
+            try {
+                int votes = Integer.parseInt(record.substring(0, split));
+                if (beerRatings.containsKey(beerName)) {
+                    beerRatings.put(beerName, votes);
+                }
+            } catch (NumberFormatException e) {
+                // cut short by a crash
+            }
         }
-
-        return beerRatings;
     }
 
     /**
      * Creates a new file given by fileName in the data directory of this
      * program. The data directory location is determined by the location of the
-     * .jar file that corresponds to this program. If a file already exists at
-     * that location with the same name then no new file is created.
+     * .jar file that corresponds to this program unless one was given to the
+     * constructor. If a file already exists at that location with the same name
+     * then no new file is created.
      */
     private void createFileInDataDirectory(String fileName) {
-        String newDir = "";
-        String path = Util.getJarPath();
-
-        String fileSeparator = System.getProperty("file.separator");
-        newDir = path + "data" + fileSeparator;
-        // JOptionPane.showMessageDialog(null, newDir);
-
-        File file = new File(newDir + fileName);
+        File file = new File(dataDirectory + fileName);
         try {
             file.getParentFile().mkdirs();
             file.createNewFile();
@@ -664,11 +1219,11 @@ public class DataManager {
     private void writeSALT() {
         createFileInDataDirectory(SALT_FILE);
         SecureRandom secureRandom = new SecureRandom();
-        SALT = secureRandom.generateSeed(8);
+        salt = secureRandom.generateSeed(8);
 
         try {
             FileOutputStream fos = new FileOutputStream(saltPath);
-            fos.write(SALT);
+            fos.write(salt);
             fos.flush();
             fos.close();
         } catch (IOException e) {
@@ -681,11 +1236,11 @@ public class DataManager {
      */
     private void readSALT() {
         File saltFile = new File(saltPath);
-        SALT = new byte[(int) saltFile.length()];
+        salt = new byte[(int) saltFile.length()];
 
         try {
             FileInputStream fis = new FileInputStream(saltPath);
-            fis.read(SALT);
+            fis.read(salt);
             fis.close();
         } catch (IOException e) {
             e.printStackTrace();
@@ -0,0 +1,215 @@
+package dataManagement;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A data file that is never left half written. New contents are written to a
+ * temporary file which is forced to disk and then moved over the data file in
+ * one atomic step, so a crash during a write leaves either the old or the new
+ * contents in place. The previous contents are kept as numbered backup
+ * generations (file.1 being the newest) so that a file damaged in some other
+ * way can still be recovered, see readGeneration(). The newest backup is a
+ * hard link to, or a copy of, the data file made before the data file is
+ * replaced, so the data file itself never disappears, not even for a moment.
+ *
+ * Writes to the same DurableFile are serialized but do not block writes to any
+ * other file.
+ *
+ * @author Aidan
+ *
+ */
+public class DurableFile {
+
+    private final Path path;
+    private final Path tempPath;
+    private final int generations;
+
+    /**
+     * @param path
+     *            String giving the full path of the data file.
+     * @param generations
+     *            int giving the number of previous versions of the file to
+     *            keep as backups.
+     */
+    public DurableFile(String path, int generations) {
+        this.path = Paths.get(path);
+        this.tempPath = Paths.get(path + ".tmp");
+        this.generations = generations;
+    }
+
+    /**
+     * @return int giving the number of backup generations kept.
+     */
+    public int getGenerations() {
+        return generations;
+    }
+
+    /**
+     * @return String giving the full path of the data file.
+     */
+    public String getPath() {
+        return path.toString();
+    }
+
+    /**
+     * Replaces the contents of the file with contents. When this method returns
+     * the new contents are on disk and the old contents are the newest backup
+     * generation.
+     *
+     * @param contents
+     *            String to write to the file.
+     * @throws IOException
+     *             if the file could not be written. The old contents are left
+     *             in place in that case.
+     */
+    public void write(String contents) throws IOException {
+        write(ByteBuffer.wrap(contents.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Replaces the contents of the file with the remaining bytes of buffer,
+     * see write(String).
+     *
+     * @param buffer
+     *            ByteBuffer holding the new contents between its position and
+     *            limit.
+     * @throws IOException
+     *             if the file could not be written. The old contents are left
+     *             in place in that case.
+     */
+    public synchronized void write(ByteBuffer buffer) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+
+        FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+
+        // shift backups up by one, dropping the oldest
+        if (generations > 0) {
+            for (int i = generations - 1; i > 0; i--) {
+                Path older = generationPath(i);
+                if (Files.exists(older)) {
+                    move(older, generationPath(i + 1));
+                }
+            }
+            if (Files.exists(path) && Files.size(path) > 0) {
+                keepBackup(path, generationPath(1));
+            }
+        }
+
+        move(tempPath, path);
+        syncDirectory();
+    }
+
+    /**
+     * Reads the given generation of the file.
+     *
+     * @param generation
+     *            int giving the generation to read; 0 for the current
+     *            contents, 1 for the newest backup up to getGenerations() for
+     *            the oldest one.
+     * @return String with the contents of that generation or null if it does
+     *         not exist or is empty.
+     * @throws IOException
+     *             if the generation exists but could not be read.
+     */
+    public String readGeneration(int generation) throws IOException {
+        Path file = generation == 0 ? path : generationPath(generation);
+
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return null;
+        }
+
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens the given generation of the file for reading, see readGeneration().
+     *
+     * @return FileChannel positioned at the start of that generation, to be
+     *         closed by the caller, or null if it does not exist or is empty.
+     * @throws IOException
+     *             if the generation exists but could not be opened.
+     */
+    public FileChannel openGeneration(int generation) throws IOException {
+        Path file = generation == 0 ? path : generationPath(generation);
+
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return null;
+        }
+
+        return FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    private Path generationPath(int generation) {
+        return Paths.get(path.toString() + "." + generation);
+    }
+
+    /**
+     * @return true if the data file or any of its backup generations exists,
+     *         i.e. the file was written before and should be read rather than
+     *         created.
+     */
+    public boolean exists() {
+        for (int generation = 0; generation <= generations; generation++) {
+            if (Files.exists(generation == 0 ? path : generationPath(generation))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Makes backup hold the contents of source while leaving source in place,
+     * by a hard link where the file system supports one and a copy otherwise.
+     */
+    private static void keepBackup(Path source, Path backup) throws IOException {
+        Files.deleteIfExists(backup);
+        try {
+            Files.createLink(backup, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(source, backup, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Forces the directory entry changes made by the moves to disk. Not every
+     * platform allows a directory to be opened, in which case this is skipped.
+     */
+    private void syncDirectory() {
+        File directory = path.toAbsolutePath().getParent().toFile();
+
+        try {
+            FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            // not supported on this platform
+        }
+    }
+}
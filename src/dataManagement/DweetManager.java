@@ -1,22 +1,38 @@
 package dataManagement;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
 import javafx.beans.property.ReadOnlyDoubleProperty;
 import javafx.beans.property.ReadOnlyDoubleWrapper;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-import org.json.JSONTokener;
 
 /**
- * This class manages updates to the Keg stats by polling dweet data at
- * scheduled time intervals.
+ * This class manages updates to the Keg stats with the readings of a
+ * SensorSource. By default dweet data is polled at scheduled time intervals.
+ * Another source, e.g. the serial port of the sensor, can be chosen at startup
+ * with the system property "sensor", see createSensorSource().
+ * <p>
+ * Readings arrive on the thread of the source. Each one is published as an
+ * immutable SensorSample and the weight and temp properties are updated from
+ * the latest sample on the JavaFX thread. At most one such update is queued at
+ * a time, so readings arriving faster than the JavaFX thread runs replace each
+ * other instead of piling up. Every sample is also recorded in a weight and a
+ * temp TimeSeries holding the history of the keg and, if set, added to
+ * SensorRollups keeping aggregates of it on disk.
+ * <p>
+ * Weights are passed through a WeightFilter before they are published, so the
+ * samples, the history and the properties hold the filtered weight and spikes
+ * and noise of the scale do not make the display jitter. The filtered weights
+ * are also watched for pours by a PourDetector and, if a PourLog is set, every
+ * pour is recorded in it with the keg it was poured from. Temps are watched by
+ * a TempAnomalyDetector telling whether the fridge is warming.
  * 
  * @author Aidan
  *
@@ -25,111 +41,363 @@ public class DweetManager {
 
     private static final String DWEET_URL = "https://dweet.io/get/latest/dweet/for/teradici-beer-fridge";
     private static final long DWEET_REFRESH_RATE = 5000; // time in ms
+    private static final long DWEET_REQUEST_TIMEOUT = 4000; // time in ms
+    private static final int SENSOR_PORT = 4210; // UDP port readings are pushed
+                                                 // to
+    private static final long SENSOR_STALE_TIME = 10000; // time in ms
+    private static final String SENSOR_PROPERTY = "sensor";
+    private static final String SERIAL_PREFIX = "serial:";
+    private static final String UDP_SPEC = "udp";
+    private static final String UDP_PREFIX = "udp:";
+    private static final String REPLAY_PREFIX = "replay:";
+    private static final int HISTORY_CAPACITY = 86400; // two days of readings
+                                                       // every 2 s
+    private static final long CONSUMPTION_HALF_LIFE = 3600000; // time in ms
+    private static final double KEG_SWAP_THRESHOLD = 3; // litres
+    private static final int FILTER_WINDOW = 5; // readings
+    private static final double FILTER_PROCESS_NOISE = 0.01; // litres squared
+    private static final double FILTER_MEASUREMENT_NOISE = 0.25; // litres
+                                                                 // squared
+    private static final double POUR_MIN_VOLUME = 0.2; // litres
+    private static final double POUR_MAX_VOLUME = 2.5; // litres
+    private static final double POUR_TOLERANCE = 0.05; // litres
+    private static final long POUR_SETTLE_TIME = 6000; // time in ms
+    private static final long POUR_MAX_TIME = 60000; // time in ms
+    private static final long TEMP_HALF_LIFE = 21600000; // time in ms
+    private static final double TEMP_RAISE_SCORE = 4; // standard deviations
+    private static final double TEMP_CLEAR_SCORE = 2; // standard deviations
+    private static final long TEMP_HOLD_TIME = 300000; // time in ms
+    private static final double TEMP_MIN_DEVIATION = 0.3; // kelvin
+    private static final long TEMP_WARM_UP_TIME = 1800000; // time in ms
 
     private final ReadOnlyDoubleWrapper weight;
     private final ReadOnlyDoubleWrapper temp;
+    private final ReadOnlyDoubleWrapper pourRate;
+    private final ReadOnlyBooleanWrapper fridgeWarming;
+    private final SensorSource source;
+    private final Executor fxExecutor;
+    private final WeightFilter weightFilter;
+
+    private final AtomicReference<SensorSample> latest = new AtomicReference<SensorSample>();
+    private volatile double rawWeight = 0; // latest reading before filtering
+    private final AtomicBoolean updatePending = new AtomicBoolean();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final TimeSeries weightHistory = new TimeSeries(HISTORY_CAPACITY);
+    private final TimeSeries tempHistory = new TimeSeries(HISTORY_CAPACITY);
+    private volatile SensorRollups rollups = null;
+    private final ConsumptionEstimator consumption = new ConsumptionEstimator(CONSUMPTION_HALF_LIFE,
+            KEG_SWAP_THRESHOLD);
+    private final PourDetector pourDetector = new PourDetector(POUR_MIN_VOLUME, POUR_MAX_VOLUME,
+            POUR_TOLERANCE, POUR_SETTLE_TIME, POUR_MAX_TIME);
+    private volatile PourLog pourLog = null;
+    private volatile String kegName = "";
+    private final TempAnomalyDetector tempAnomaly = new TempAnomalyDetector(TEMP_HALF_LIFE, TEMP_RAISE_SCORE,
+            TEMP_CLEAR_SCORE, TEMP_HOLD_TIME, TEMP_MIN_DEVIATION, TEMP_WARM_UP_TIME);
 
     public DweetManager() {
-        DweetParser dweetParser = new DweetParser(this, DWEET_URL);
-        Timer timer = new Timer();
-        timer.schedule(dweetParser, 0, DWEET_REFRESH_RATE);
+        this(createSensorSource(System.getProperty(SENSOR_PROPERTY)));
+    }
 
+    /**
+     * @param source
+     *            SensorSource providing the readings, started immediately.
+     */
+    public DweetManager(SensorSource source) {
+        this(source, Platform::runLater);
+    }
+
+    /**
+     * @param source
+     *            SensorSource providing the readings, started immediately.
+     * @param fxExecutor
+     *            Executor running property updates on the thread the
+     *            properties are used on.
+     */
+    public DweetManager(SensorSource source, Executor fxExecutor) {
+        this(source, fxExecutor, new WeightFilter(FILTER_WINDOW, FILTER_PROCESS_NOISE, FILTER_MEASUREMENT_NOISE));
+    }
+
+    /**
+     * @param source
+     *            SensorSource providing the readings, started immediately.
+     * @param fxExecutor
+     *            Executor running property updates on the thread the
+     *            properties are used on.
+     * @param weightFilter
+     *            WeightFilter every weight is passed through.
+     */
+    public DweetManager(SensorSource source, Executor fxExecutor, WeightFilter weightFilter) {
         weight = new ReadOnlyDoubleWrapper();
         temp = new ReadOnlyDoubleWrapper();
+        pourRate = new ReadOnlyDoubleWrapper();
+        fridgeWarming = new ReadOnlyBooleanWrapper();
+
+        this.fxExecutor = fxExecutor;
+        this.weightFilter = weightFilter;
+        this.source = source;
+        source.start(this::updateReading);
     }
 
     /**
-     * @return ReadOnlyIntegerProperty of weight.
+     * Creates the SensorSource described by spec:
+     * <ul>
+     * <li>null, "dweet" or anything not listed below polls Dweet.io only.</li>
+     * <li>"udp" receives readings pushed over UDP, see UdpSensorSource,
+     * falling back to Dweet.io while none are pushed. "udp:address" only
+     * listens on the given address instead of on all addresses.</li>
+     * <li>"serial:path" reads the serial device or named pipe at path, see
+     * LineSensorSource, falling back to Dweet.io while it is silent.</li>
+     * <li>"replay:path@speed" replays the trace file at path speed times
+     * faster than recorded, see ReplaySensorSource. "@speed" may be left
+     * out to replay in real time.</li>
+     * </ul>
      */
-    public ReadOnlyDoubleProperty weightProperty() {
-        return weight.getReadOnlyProperty();
+    public static SensorSource createSensorSource(String spec) {
+        DweetPoller poller = new DweetPoller(DWEET_URL, DWEET_REFRESH_RATE, DWEET_REQUEST_TIMEOUT);
+
+        if (UDP_SPEC.equals(spec)) {
+            return new FallbackSensorSource(new UdpSensorSource(SENSOR_PORT), poller, SENSOR_STALE_TIME);
+        } else if (spec != null && spec.startsWith(UDP_PREFIX)) {
+            InetSocketAddress address = new InetSocketAddress(spec.substring(UDP_PREFIX.length()), SENSOR_PORT);
+            return new FallbackSensorSource(new UdpSensorSource(address), poller, SENSOR_STALE_TIME);
+        } else if (spec != null && spec.startsWith(REPLAY_PREFIX)) {
+            String path = spec.substring(REPLAY_PREFIX.length());
+            double speed = 1;
+            int at = path.lastIndexOf('@');
+            if (at >= 0) {
+                speed = Double.parseDouble(path.substring(at + 1));
+                path = path.substring(0, at);
+            }
+            try {
+                return ReplaySensorSource.load(path, speed);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return poller;
+            }
+        } else if (spec != null && spec.startsWith(SERIAL_PREFIX)) {
+            return new FallbackSensorSource(new LineSensorSource(spec.substring(SERIAL_PREFIX.length())), poller,
+                    SENSOR_STALE_TIME);
+        } else {
+            return poller;
+        }
     }
 
     /**
-     * @return ReadOnlyIntegerProperty of temp.
+     * @return SensorSource providing the readings.
      */
-    public ReadOnlyDoubleProperty tempProperty() {
-        return temp.getReadOnlyProperty();
+    public SensorSource getSensorSource() {
+        return source;
     }
 
     /**
-     * Modifies the value of weight and temp fields with new data polled from
-     * Dweet by a DweetParser object.
-     * 
-     * @param type
-     *            ContentType which indicates the type of value to be updated
-     *            (weight/temp).
-     * @param val
-     *            double value polled from Dweet.
+     * @return ReadOnlyDoubleProperty of the estimated amount of beer poured
+     *         per hour, see ConsumptionEstimator.
      */
-    public void updateContent(ContentType type, double val) {
-        if (type == ContentType.WEIGHT) {
-            weight.set(val);
-        } else if (type == ContentType.TEMP) {
-            temp.set(val);
-        }
+    public ReadOnlyDoubleProperty pourRateProperty() {
+        return pourRate.getReadOnlyProperty();
     }
-}
 
-/**
- * This class is responsible for reading and parsing the JSON data polled from
- * Dweet.io.
- * 
- * @author Aidan
- *
- */
-class DweetParser extends TimerTask {
+    /**
+     * @return ConsumptionEstimator fed with every weight received.
+     */
+    public ConsumptionEstimator getConsumptionEstimator() {
+        return consumption;
+    }
 
-    private final DweetManager kegManager;
-    private final String urlString;
+    /**
+     * @return WeightFilter every weight is passed through, holding the
+     *         residual statistics of the scale.
+     */
+    public WeightFilter getWeightFilter() {
+        return weightFilter;
+    }
+
+    /**
+     * @return latest SensorSample received, null if none was received yet. May
+     *         be called from any thread.
+     */
+    public SensorSample getLatestSample() {
+        return latest.get();
+    }
 
-    public DweetParser(DweetManager kegManager, String url) {
-        this.kegManager = kegManager;
-        this.urlString = url;
+    /**
+     * @return number of samples that were replaced by a newer one before they
+     *         were shown.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
     }
 
     /**
-     * Makes an HTTP request to the given Dweet url then reads and parses the
-     * JSON data. Updated values are then sent to the KegManager via
-     * sendToManager().
+     * @return TimeSeries of every weight received.
      */
-    @Override
-    public void run() {
-        BufferedReader reader;
-        String inputLine;
+    public TimeSeries getWeightHistory() {
+        return weightHistory;
+    }
 
-        try {
-            // Read JSON string form URL
-            URL url = new URL(urlString);
-            reader = new BufferedReader(new InputStreamReader(url.openStream()));
-            inputLine = reader.readLine();
+    /**
+     * @return TimeSeries of every temp received.
+     */
+    public TimeSeries getTempHistory() {
+        return tempHistory;
+    }
 
-            JSONObject jsonDweet = (JSONObject) new JSONTokener(inputLine).nextValue();
-            JSONArray with = jsonDweet.getJSONArray("with");
-            JSONObject withObject = with.getJSONObject(0); // with only contains
-                                                           // one element
-            JSONObject content = withObject.getJSONObject("content");
+    /**
+     * Once this returns no more samples are added to the previous rollups.
+     *
+     * @param rollups
+     *            SensorRollups every following sample is added to, null for
+     *            none.
+     */
+    public synchronized void setRollups(SensorRollups rollups) {
+        this.rollups = rollups;
+    }
 
-            sendToManager(ContentType.WEIGHT, content.getDouble("weight"));
-            sendToManager(ContentType.TEMP, content.getDouble("temp"));
+    /**
+     * @return SensorRollups samples are added to, null if there are none.
+     */
+    public SensorRollups getRollups() {
+        return rollups;
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (JSONException e) {
-            e.printStackTrace();
-        }
+    /**
+     * @return ReadOnlyBooleanProperty which is true while the fridge is
+     *         warming, see TempAnomalyDetector.
+     */
+    public ReadOnlyBooleanProperty fridgeWarmingProperty() {
+        return fridgeWarming.getReadOnlyProperty();
+    }
+
+    /**
+     * @return TempAnomalyDetector fed with every temp received.
+     */
+    public TempAnomalyDetector getTempAnomalyDetector() {
+        return tempAnomaly;
+    }
+
+    /**
+     * @return PourDetector fed with every weight received.
+     */
+    public PourDetector getPourDetector() {
+        return pourDetector;
+    }
+
+    /**
+     * Once this returns no more pours are added to the previous pour log.
+     *
+     * @param pourLog
+     *            PourLog every following pour is added to, null for none.
+     */
+    public synchronized void setPourLog(PourLog pourLog) {
+        this.pourLog = pourLog;
+    }
+
+    /**
+     * Sets the name of the beer in the keg that following pours are logged
+     * with. Must be called whenever the keg changes, so pours can be logged
+     * without reading the current keg from disk.
+     *
+     * @param kegName
+     *            String name of the beer in the keg, the empty string if it
+     *            is not known.
+     */
+    public void setKegName(String kegName) {
+        this.kegName = kegName == null ? "" : kegName;
+    }
+
+    /**
+     * @return PourLog pours are added to, null if there is none.
+     */
+    public PourLog getPourLog() {
+        return pourLog;
+    }
+
+    /**
+     * @return latest reading of the weight as the sensor sent it, before
+     *         filtering.
+     */
+    public double getRawWeight() {
+        return rawWeight;
+    }
+
+    /**
+     * Starts over on the weight when a new keg is tapped: the weight filter
+     * is seeded with the latest raw reading, so the filtered weight does not
+     * slowly converge from the old keg, and the pour rate and the level the
+     * pour detector settled on of the old keg are forgotten.
+     *
+     * @return latest raw reading of the weight.
+     */
+    public synchronized double tapNewKeg() {
+        double current = rawWeight;
+        weightFilter.reset();
+        weightFilter.filter(current);
+        consumption.reset();
+        pourDetector.reset();
+        return current;
+    }
+
+    /**
+     * Stops receiving readings.
+     */
+    public void stop() {
+        source.stop();
+    }
+
+    /**
+     * @return ReadOnlyIntegerProperty of weight.
+     */
+    public ReadOnlyDoubleProperty weightProperty() {
+        return weight.getReadOnlyProperty();
     }
 
     /**
-     * Sends newly polled values from the Dweet url to the KegManager.
-     * 
-     * @param type
-     *            ContentType which gives the type of value to be sent.
-     * @param val
-     *            double value polled from the Dweet url.
+     * @return ReadOnlyIntegerProperty of temp.
      */
-    private void sendToManager(ContentType type, double val) {
-        kegManager.updateContent(type, val);
+    public ReadOnlyDoubleProperty tempProperty() {
+        return temp.getReadOnlyProperty();
     }
 
+    /**
+     * Publishes a new sample and queues an update of the properties unless one
+     * is queued already, in which case that update will show this sample.
+     * Synchronized as a source may deliver readings from more than one thread,
+     * e.g. FallbackSensorSource while it switches sources, and the filters and
+     * detectors fed here expect the readings one at a time and in order.
+     */
+    private synchronized void updateReading(double rawWeight, double temp) {
+        this.rawWeight = rawWeight;
+        double weight = weightFilter.filter(rawWeight);
+        SensorSample sample = new SensorSample(weight, temp, System.currentTimeMillis());
+        weightHistory.add(sample.getTimestamp(), weight);
+        tempHistory.add(sample.getTimestamp(), temp);
+        consumption.add(sample.getTimestamp(), weight);
+        double poured = pourDetector.add(sample.getTimestamp(), weight);
+        tempAnomaly.add(sample.getTimestamp(), temp);
+        PourLog currentPourLog = pourLog;
+        if (poured > 0 && currentPourLog != null) {
+            currentPourLog.add(new PourEvent(pourDetector.getLastPourTime(), poured, kegName));
+        }
+        SensorRollups currentRollups = rollups;
+        if (currentRollups != null) {
+            currentRollups.add(sample.getTimestamp(), weight, temp);
+        }
+        latest.set(sample);
+
+        if (updatePending.compareAndSet(false, true)) {
+            fxExecutor.execute(this::showLatest);
+        } else {
+            coalescedCount.incrementAndGet();
+        }
+    }
+
+    private void showLatest() {
+        // clear first so a sample published from now on queues another update
+        updatePending.set(false);
+        SensorSample sample = latest.get();
+        weight.set(sample.getWeight());
+        temp.set(sample.getTemp());
+        pourRate.set(consumption.getRate());
+        fridgeWarming.set(tempAnomaly.isWarming());
+    }
 }
@@ -0,0 +1,452 @@
+package dataManagement;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the weight and temp out of a dweet of the keg sensor straight from
+ * the bytes of the response, without building a tree of the document or
+ * decoding it into a String. Only the values on the way to the content are
+ * looked at; everything else is skipped over. Numbers of up to 15 significant
+ * digits with an exponent within 22, which covers everything the sensor sends,
+ * are converted exactly without allocating; only other numbers are handed to
+ * Double.parseDouble(). Parsing a dweet of the sensor allocates nothing.
+ * <p>
+ * The parsed values are kept in the parser, so a parser must only be used by
+ * one thread at a time.
+ *
+ * @author Aidan
+ *
+ */
+public class DweetPayloadParser {
+
+    private static final int MAX_DEPTH = 32;
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private static final byte[] WITH = "with".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CREATED = "created".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTENT = "content".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WEIGHT = "weight".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TEMP = "temp".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] data;
+    private int position;
+    private int end;
+
+    // bounds of the last string read, without the quotes
+    private int stringStart;
+    private int stringEnd;
+    private double number; // last number read
+
+    private double weight;
+    private double temp;
+    private byte[] created = new byte[64];
+    private int createdLength = -1; // -1 if the dweet has no created time
+    private byte[] lastCreated = new byte[64];
+    private int lastCreatedLength = -1;
+    private boolean repeated = false;
+
+    /**
+     * Parses a response of Dweet.io holding the latest dweet, e.g.
+     * {"this":"succeeded","with":[{"created":"...","content":{"weight":12.5,
+     * "temp":4}}]}.
+     *
+     * @return true if data holds a dweet with a weight and temp, which can
+     *         then be read with getWeight() and getTemp().
+     */
+    public boolean parseDweet(byte[] data, int offset, int length) {
+        start(data, offset, length);
+        createdLength = -1;
+        if (!parseResponse()) {
+            return false;
+        }
+
+        repeated = createdLength >= 0 && createdLength == lastCreatedLength
+                && regionEquals(created, lastCreated, createdLength);
+        byte[] swap = lastCreated;
+        lastCreated = created;
+        lastCreatedLength = createdLength;
+        created = swap;
+        return true;
+    }
+
+    /**
+     * Parses the content of a dweet on its own, e.g. {"weight":12.5,"temp":4}
+     * as the sensor sends it over the local network.
+     *
+     * @return true if data holds a weight and temp, which can then be read
+     *         with getWeight() and getTemp().
+     */
+    public boolean parseContent(byte[] data, int offset, int length) {
+        start(data, offset, length);
+        return parseContentObject() && skipWhitespace() == end;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public double getTemp() {
+        return temp;
+    }
+
+    /**
+     * @return true if the last dweet parsed has the same created time as the
+     *         one parsed before it, i.e. the sensor has not dweeted since.
+     */
+    public boolean isRepeated() {
+        return repeated;
+    }
+
+    private void start(byte[] data, int offset, int length) {
+        this.data = data;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * Reads the top level object up to the content of the first element of
+     * "with".
+     */
+    private boolean parseResponse() {
+        if (!consume('{')) {
+            return false;
+        }
+        if (consume('}')) {
+            return false;
+        }
+
+        do {
+            if (!readString() || !consume(':')) {
+                return false;
+            }
+            if (nameEquals(WITH)) {
+                return parseWith();
+            }
+            if (!skipValue(1)) {
+                return false;
+            }
+        } while (consume(','));
+        return false;
+    }
+
+    /**
+     * Reads the first element of the "with" array, which holds the dweet.
+     */
+    private boolean parseWith() {
+        if (!consume('[') || !consume('{')) {
+            return false;
+        }
+        if (consume('}')) {
+            return false;
+        }
+
+        boolean hasContent = false;
+        do {
+            if (!readString() || !consume(':')) {
+                return false;
+            }
+            if (nameEquals(CONTENT)) {
+                if (!parseContentObject()) {
+                    return false;
+                }
+                hasContent = true;
+            } else if (nameEquals(CREATED) && peek() == '"') {
+                if (!readString()) {
+                    return false;
+                }
+                saveCreated();
+            } else if (!skipValue(3)) {
+                return false;
+            }
+        } while (consume(','));
+
+        return consume('}') && hasContent;
+    }
+
+    /**
+     * Reads an object holding a weight and a temp, given as numbers or as
+     * strings holding numbers.
+     */
+    private boolean parseContentObject() {
+        if (!consume('{')) {
+            return false;
+        }
+        if (consume('}')) {
+            return false;
+        }
+
+        boolean hasWeight = false;
+        boolean hasTemp = false;
+        do {
+            if (!readString() || !consume(':')) {
+                return false;
+            }
+            if (nameEquals(WEIGHT)) {
+                if (!readNumberValue()) {
+                    return false;
+                }
+                weight = number;
+                hasWeight = true;
+            } else if (nameEquals(TEMP)) {
+                if (!readNumberValue()) {
+                    return false;
+                }
+                temp = number;
+                hasTemp = true;
+            } else if (!skipValue(1)) {
+                return false;
+            }
+        } while (consume(','));
+
+        return consume('}') && hasWeight && hasTemp;
+    }
+
+    private void saveCreated() {
+        int length = stringEnd - stringStart;
+        if (length > created.length) {
+            created = new byte[length];
+        }
+        System.arraycopy(data, stringStart, created, 0, length);
+        createdLength = length;
+    }
+
+    /**
+     * Reads a number, or a string holding nothing but a number.
+     */
+    private boolean readNumberValue() {
+        if (peek() != '"') {
+            return readNumber();
+        }
+
+        if (!readString()) {
+            return false;
+        }
+        int stringEnd = this.stringEnd;
+        int afterString = position;
+        position = stringStart;
+        boolean valid = readNumber() && position == stringEnd;
+        position = afterString;
+        return valid;
+    }
+
+    /**
+     * Skips the value at position, with depth giving how deeply it is nested.
+     */
+    private boolean skipValue(int depth) {
+        if (depth > MAX_DEPTH) {
+            return false;
+        }
+
+        switch (peek()) {
+        case '"':
+            return readString();
+        case '{':
+            position++;
+            if (consume('}')) {
+                return true;
+            }
+            do {
+                if (!readString() || !consume(':') || !skipValue(depth + 1)) {
+                    return false;
+                }
+            } while (consume(','));
+            return consume('}');
+        case '[':
+            position++;
+            if (consume(']')) {
+                return true;
+            }
+            do {
+                if (!skipValue(depth + 1)) {
+                    return false;
+                }
+            } while (consume(','));
+            return consume(']');
+        case 't':
+            return skipLiteral("true");
+        case 'f':
+            return skipLiteral("false");
+        case 'n':
+            return skipLiteral("null");
+        default:
+            return readNumber();
+        }
+    }
+
+    private boolean skipLiteral(String literal) {
+        if (end - position < literal.length()) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (data[position + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        position += literal.length();
+        return true;
+    }
+
+    /**
+     * Reads a string, setting stringStart and stringEnd to its raw bytes.
+     * Escapes are skipped over but not decoded.
+     */
+    private boolean readString() {
+        if (!consume('"')) {
+            return false;
+        }
+        stringStart = position;
+
+        while (position < end) {
+            byte b = data[position];
+            if (b == '"') {
+                stringEnd = position++;
+                return true;
+            }
+            position += b == '\\' ? 2 : 1;
+        }
+        return false;
+    }
+
+    private boolean nameEquals(byte[] name) {
+        return stringEnd - stringStart == name.length && regionEquals(data, stringStart, name);
+    }
+
+    private static boolean regionEquals(byte[] data, int offset, byte[] other) {
+        for (int i = 0; i < other.length; i++) {
+            if (data[offset + i] != other[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionEquals(byte[] a, byte[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a JSON number into number. Numbers that cannot be converted
+     * exactly from a long and a power of ten are handed to
+     * Double.parseDouble().
+     */
+    private boolean readNumber() {
+        int start = position;
+        boolean negative = consumeByte('-');
+        long mantissa = 0;
+        int digits = 0; // significant digits in mantissa
+        int exponent = 0;
+        boolean exact = true;
+
+        int integerStart = position;
+        while (position < end && isDigit(data[position])) {
+            int digit = data[position++] - '0';
+            if (digits < 18) {
+                mantissa = mantissa * 10 + digit;
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+                exact &= digit == 0;
+            }
+        }
+        if (position == integerStart) {
+            return false;
+        }
+
+        if (consumeByte('.')) {
+            int fractionStart = position;
+            while (position < end && isDigit(data[position])) {
+                int digit = data[position++] - '0';
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + digit;
+                    exponent--;
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                } else {
+                    exact &= digit == 0;
+                }
+            }
+            if (position == fractionStart) {
+                return false;
+            }
+        }
+
+        if (position < end && (data[position] == 'e' || data[position] == 'E')) {
+            position++;
+            boolean negativeExponent = consumeByte('-');
+            if (!negativeExponent) {
+                consumeByte('+');
+            }
+            int exponentStart = position;
+            int value = 0;
+            while (position < end && isDigit(data[position])) {
+                value = Math.min(value * 10 + data[position++] - '0', 100000);
+            }
+            if (position == exponentStart) {
+                return false;
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+
+        if (exact && mantissa < MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            number = negative ? -value : value;
+        } else {
+            number = Double.parseDouble(new String(data, start, position - start, StandardCharsets.US_ASCII));
+        }
+        return true;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Skips whitespace, then consumes c if it is next.
+     */
+    private boolean consume(char c) {
+        skipWhitespace();
+        return consumeByte(c);
+    }
+
+    private boolean consumeByte(char c) {
+        if (position < end && data[position] == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Skips whitespace.
+     *
+     * @return the next byte, or -1 at the end of the data.
+     */
+    private int peek() {
+        skipWhitespace();
+        return position < end ? data[position] : -1;
+    }
+
+    /**
+     * @return position after skipping whitespace.
+     */
+    private int skipWhitespace() {
+        while (position < end) {
+            byte b = data[position];
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+}
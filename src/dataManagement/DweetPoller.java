@@ -0,0 +1,217 @@
+package dataManagement;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tools.LatencyHistogram;
+
+/**
+ * Polls the latest dweet of the keg sensor without blocking any thread while a
+ * request is in flight. Requests are sent asynchronously through a single
+ * HttpClient, which keeps the connection to Dweet.io alive between polls, and
+ * every request has a connect and response timeout so a slow response only
+ * delays the poll it belongs to.
+ * <p>
+ * Only one request is in flight at a time: the next poll is scheduled when the
+ * previous one completes, after the refresh rate if it succeeded or after a
+ * jittered exponential backoff if it failed. Polls are conditional on the ETag
+ * of the last response and a dweet that has not changed since the last poll is
+ * not sent to the listener again. Responses are read as bytes by a
+ * DweetPayloadParser.
+ *
+ * @author Aidan
+ *
+ */
+public class DweetPoller implements SensorSource {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(3);
+    private static final long MAX_BACKOFF = 60000; // time in ms
+    private static final int MAX_BACKOFF_SHIFT = 10;
+
+    private final URI uri;
+    private final long refreshRate; // in ms
+    private final Duration requestTimeout;
+    private final HttpClient client;
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private ScheduledExecutorService executor = null; // of the current run
+    private volatile Listener listener;
+
+    // only touched by the poll in flight, polls never overlap
+    private String etag = null;
+    private final DweetPayloadParser parser = new DweetPayloadParser();
+    private int failures = 0;
+
+    private volatile long lastSuccessTime = 0;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * @param url
+     *            String giving the url of the latest dweet.
+     * @param refreshRate
+     *            long giving the time in ms between polls.
+     * @param requestTimeout
+     *            long giving the time in ms a response may take before the
+     *            poll fails.
+     */
+    public DweetPoller(String url, long refreshRate, long requestTimeout) {
+        this.uri = URI.create(url);
+        this.refreshRate = refreshRate;
+        this.requestTimeout = Duration.ofMillis(requestTimeout);
+        this.client = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+    }
+
+    /**
+     * Starts polling immediately.
+     */
+    @Override
+    public synchronized void start(Listener listener) {
+        stop();
+        this.listener = listener;
+        failures = 0;
+
+        ScheduledExecutorService run = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dweet-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor = run;
+        run.execute(() -> poll(run));
+    }
+
+    /**
+     * Stops polling. A request in flight is completed but not followed by
+     * another poll.
+     */
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Sends a request and schedules the next poll of run once it completes.
+     */
+    private void poll(ScheduledExecutorService run) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(requestTimeout).GET();
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+
+        requestCount.incrementAndGet();
+        long start = System.nanoTime();
+
+        client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((response, error) -> {
+                    latency.record((System.nanoTime() - start) / 1000000);
+
+                    if (error == null && handleResponse(response)) {
+                        failures = 0;
+                        lastSuccessTime = System.currentTimeMillis();
+                        schedule(run, refreshRate);
+                    } else {
+                        if (error != null) {
+                            error.printStackTrace();
+                        }
+                        failures++;
+                        failureCount.incrementAndGet();
+                        schedule(run, backoff());
+                    }
+                });
+    }
+
+    /**
+     * @return true if response holds the latest dweet or tells it has not
+     *         changed.
+     */
+    private boolean handleResponse(HttpResponse<byte[]> response) {
+        if (response.statusCode() == 304) {
+            notModifiedCount.incrementAndGet();
+            return true;
+        } else if (response.statusCode() != 200) {
+            return false;
+        }
+
+        byte[] body = response.body();
+        if (!parser.parseDweet(body, 0, body.length)) {
+            System.out.println("Malformed dweet: " + new String(body, StandardCharsets.UTF_8));
+            return false;
+        }
+        etag = response.headers().firstValue("ETag").orElse(null);
+
+        if (parser.isRepeated()) {
+            notModifiedCount.incrementAndGet();
+        } else {
+            listener.onReading(parser.getWeight(), parser.getTemp());
+        }
+        return true;
+    }
+
+    /**
+     * @return delay in ms before the next poll after failures consecutive
+     *         failed polls, chosen at random between half and all of the
+     *         refresh rate doubled for every failure.
+     */
+    private long backoff() {
+        long max = Math.min(MAX_BACKOFF, refreshRate << Math.min(failures, MAX_BACKOFF_SHIFT));
+        return max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1);
+    }
+
+    private void schedule(ScheduledExecutorService run, long delay) {
+        try {
+            run.schedule(() -> poll(run), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // the run was stopped while the request was in flight
+        }
+    }
+
+    /**
+     * @return time in ms since the epoch of the last successful poll, 0 if no
+     *         poll has succeeded yet.
+     */
+    public long getLastSuccessTime() {
+        return lastSuccessTime;
+    }
+
+    /**
+     * @return number of requests sent.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return number of polls that found the dweet unchanged.
+     */
+    public long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    /**
+     * @return number of polls that failed or timed out.
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * @return LatencyHistogram of the response times of all polls.
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return latency;
+    }
+}
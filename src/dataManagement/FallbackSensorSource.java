@@ -0,0 +1,117 @@
+package dataManagement;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers the readings of a primary source and falls back to a second source
+ * while the primary one is silent. Both sources are started at once, so
+ * readings arrive right away whichever one delivers. The fallback source is
+ * stopped as soon as the primary source delivers a reading and only started
+ * again once the primary source has not delivered a reading for the stale
+ * time, so e.g. Dweet.io is only polled while the sensor is silent.
+ * <p>
+ * Readings are delivered on the threads of the two sources and outside the
+ * lock of this source, so stopping a source never waits on a reading; while
+ * the sources switch the listener may be called from both at once.
+ *
+ * @author Aidan
+ *
+ */
+public class FallbackSensorSource implements SensorSource {
+
+    private final SensorSource primary;
+    private final SensorSource fallback;
+    private final long staleTime; // in ms
+
+    private ScheduledExecutorService watchdog = null;
+    private Listener listener = null;
+    private long lastPrimaryReading = 0; // in ms since the epoch
+    private boolean fallbackActive = false;
+
+    /**
+     * @param primary
+     *            SensorSource whose readings are preferred.
+     * @param fallback
+     *            SensorSource used while primary is silent.
+     * @param staleTime
+     *            long giving the time in ms without a reading from primary
+     *            after which fallback is started again.
+     */
+    public FallbackSensorSource(SensorSource primary, SensorSource fallback, long staleTime) {
+        this.primary = primary;
+        this.fallback = fallback;
+        this.staleTime = staleTime;
+    }
+
+    @Override
+    public synchronized void start(Listener listener) {
+        stop();
+        this.listener = listener;
+        lastPrimaryReading = System.currentTimeMillis();
+
+        primary.start(this::onPrimaryReading);
+        fallbackActive = true;
+        fallback.start(this::onFallbackReading);
+
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sensor-fallback");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleWithFixedDelay(this::checkPrimary, staleTime / 2, staleTime / 2, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (watchdog != null) {
+            watchdog.shutdown();
+            watchdog = null;
+            primary.stop();
+            stopFallback();
+        }
+    }
+
+    /**
+     * @return true if the fallback source is running.
+     */
+    public synchronized boolean isFallbackActive() {
+        return fallbackActive;
+    }
+
+    private void onPrimaryReading(double weight, double temp) {
+        Listener current;
+        synchronized (this) {
+            lastPrimaryReading = System.currentTimeMillis();
+            stopFallback();
+            current = listener;
+        }
+        current.onReading(weight, temp);
+    }
+
+    private void onFallbackReading(double weight, double temp) {
+        Listener current;
+        synchronized (this) {
+            if (!fallbackActive) {
+                return;
+            }
+            current = listener;
+        }
+        current.onReading(weight, temp);
+    }
+
+    private synchronized void checkPrimary() {
+        if (!fallbackActive && System.currentTimeMillis() - lastPrimaryReading >= staleTime) {
+            fallbackActive = true;
+            fallback.start(this::onFallbackReading);
+        }
+    }
+
+    private void stopFallback() {
+        if (fallbackActive) {
+            fallbackActive = false;
+            fallback.stop();
+        }
+    }
+}
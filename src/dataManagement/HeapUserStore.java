@@ -0,0 +1,100 @@
+package dataManagement;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * UserStore held in a HashMap on the heap. It is written to disk as a whole,
+ * see DataManager.compactUsers().
+ *
+ * @author Aidan
+ *
+ */
+class HeapUserStore implements UserStore {
+
+    private final Map<ByteBuffer, UserFlags> users = new HashMap<ByteBuffer, UserFlags>();
+    private int currentEpoch = FIRST_EPOCH;
+
+    @Override
+    public int getFlags(byte[] hash) {
+        UserFlags flags = users.get(ByteBuffer.wrap(hash));
+        if (flags == null) {
+            return -1;
+        }
+        return flags.isAdmin() ? ADMIN : 0;
+    }
+
+    @Override
+    public boolean add(byte[] hash, int flags, int voteEpoch) {
+        ByteBuffer key = ByteBuffer.wrap(hash);
+        if (users.containsKey(key)) {
+            return false;
+        }
+
+        users.put(ByteBuffer.wrap(hash.clone()), new UserFlags((flags & ADMIN) != 0, voteEpoch));
+        return true;
+    }
+
+    @Override
+    public void setFlag(byte[] hash, int flag, boolean value) {
+        if (flag == ADMIN) {
+            getOrAdd(hash).setAdmin(value);
+        }
+    }
+
+    @Override
+    public int getVoteEpoch(byte[] hash) {
+        UserFlags flags = users.get(ByteBuffer.wrap(hash));
+        return flags == null ? 0 : flags.getVoteEpoch();
+    }
+
+    @Override
+    public void setVoteEpoch(byte[] hash, int epoch) {
+        getOrAdd(hash).setVoteEpoch(epoch);
+    }
+
+    private UserFlags getOrAdd(byte[] hash) {
+        UserFlags flags = users.get(ByteBuffer.wrap(hash));
+        if (flags == null) {
+            flags = new UserFlags(false, 0);
+            users.put(ByteBuffer.wrap(hash.clone()), flags);
+        }
+        return flags;
+    }
+
+    @Override
+    public int getCurrentEpoch() {
+        return currentEpoch;
+    }
+
+    @Override
+    public void setCurrentEpoch(int epoch) {
+        currentEpoch = epoch;
+    }
+
+    @Override
+    public int size() {
+        return users.size();
+    }
+
+    @Override
+    public void clear() {
+        users.clear();
+        currentEpoch = FIRST_EPOCH;
+    }
+
+    @Override
+    public void forEach(Visitor visitor) throws IOException {
+        for (Map.Entry<ByteBuffer, UserFlags> user : users.entrySet()) {
+            UserFlags flags = user.getValue();
+            visitor.visit(user.getKey().array(), flags.isAdmin() ? ADMIN : 0, flags.getVoteEpoch());
+        }
+    }
+
+    @Override
+    public void sync() {
+        // held in memory only
+    }
+}
@@ -0,0 +1,286 @@
+package dataManagement;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a JSON document one token at a time from a channel, without building a
+ * tree of the whole document or holding its text in memory. Only a small
+ * buffer of characters is kept, so the data files can be loaded straight into
+ * the maps that hold them.
+ *
+ * Callers walk the document with beginObject()/endObject(),
+ * beginArray()/endArray(), hasNext() and nextName(), and read values with
+ * nextString(), nextInt(), nextBoolean() or skipValue(). A document that does
+ * not follow the expected structure or is cut short makes these methods throw
+ * an IOException.
+ *
+ * @author Aidan
+ *
+ */
+public class JsonStreamReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private long offset = 0; // characters consumed before buffer[0]
+
+    // true after a value or name, when the next token of an array or object
+    // must be a comma or its closing bracket
+    private boolean expectComma = false;
+    private final StringBuilder string = new StringBuilder();
+
+    /**
+     * @param channel
+     *            ReadableByteChannel holding a UTF-8 encoded JSON document. Is
+     *            closed by close().
+     */
+    public JsonStreamReader(ReadableByteChannel channel) {
+        this.reader = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), BUFFER_SIZE);
+    }
+
+    public void beginObject() throws IOException {
+        expect('{');
+        expectComma = false;
+    }
+
+    public void endObject() throws IOException {
+        expect('}');
+        expectComma = true;
+    }
+
+    public void beginArray() throws IOException {
+        expect('[');
+        expectComma = false;
+    }
+
+    public void endArray() throws IOException {
+        expect(']');
+        expectComma = true;
+    }
+
+    /**
+     * @return true if the current array or object has another element and
+     *         false if the next token closes it.
+     */
+    public boolean hasNext() throws IOException {
+        int c = peekToken();
+        if (c == '}' || c == ']') {
+            return false;
+        }
+
+        if (expectComma) {
+            expect(',');
+            expectComma = false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the name of the next member of the current object and the colon
+     * following it.
+     */
+    public String nextName() throws IOException {
+        String name = nextString();
+        expect(':');
+        expectComma = false;
+        return name;
+    }
+
+    public String nextString() throws IOException {
+        expect('"');
+        string.setLength(0);
+
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                break;
+            } else if (c == '\\') {
+                string.append(readEscape());
+            } else if (c < 0x20) {
+                throw error("Unterminated string");
+            } else {
+                string.append((char) c);
+            }
+        }
+
+        expectComma = true;
+        return string.toString();
+    }
+
+    public int nextInt() throws IOException {
+        String literal = nextLiteral();
+        try {
+            return Integer.parseInt(literal);
+        } catch (NumberFormatException e) {
+            throw error("Expected an int but found " + literal);
+        }
+    }
+
+    public boolean nextBoolean() throws IOException {
+        String literal = nextLiteral();
+        if (literal.equals("true")) {
+            return true;
+        } else if (literal.equals("false")) {
+            return false;
+        }
+        throw error("Expected a boolean but found " + literal);
+    }
+
+    /**
+     * Skips the next value, including every value nested in it.
+     */
+    public void skipValue() throws IOException {
+        int c = peekToken();
+
+        if (c == '"') {
+            nextString();
+        } else if (c == '{') {
+            beginObject();
+            while (hasNext()) {
+                nextName();
+                skipValue();
+            }
+            endObject();
+        } else if (c == '[') {
+            beginArray();
+            while (hasNext()) {
+                skipValue();
+            }
+            endArray();
+        } else {
+            nextLiteral();
+        }
+    }
+
+    /**
+     * Checks that nothing but whitespace follows the document.
+     */
+    public void endDocument() throws IOException {
+        if (peekToken() != -1) {
+            throw error("Unexpected data after document");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Reads a number, true, false or null.
+     */
+    private String nextLiteral() throws IOException {
+        peekToken();
+        string.setLength(0);
+
+        while (true) {
+            int c = peek();
+            if ((c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || c == '-' || c == '+' || c == '.' || c == 'E') {
+                string.append((char) c);
+                position++;
+            } else {
+                break;
+            }
+        }
+
+        if (string.length() == 0) {
+            throw error("Expected a value");
+        }
+
+        expectComma = true;
+        return string.toString();
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+        case '"':
+        case '\\':
+        case '/':
+            return (char) c;
+        case 'b':
+            return '\b';
+        case 'f':
+            return '\f';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 't':
+            return '\t';
+        case 'u':
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(read(), 16);
+                if (digit < 0) {
+                    throw error("Invalid unicode escape");
+                }
+                value = (value << 4) | digit;
+            }
+            return (char) value;
+        default:
+            throw error("Invalid escape");
+        }
+    }
+
+    private void expect(char token) throws IOException {
+        if (peekToken() != token) {
+            throw error("Expected '" + token + "'");
+        }
+        position++;
+    }
+
+    /**
+     * Skips whitespace and returns the next character without consuming it,
+     * or -1 at the end of the document.
+     */
+    private int peekToken() throws IOException {
+        while (true) {
+            int c = peek();
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                position++;
+            } else {
+                return c;
+            }
+        }
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            throw error("Unexpected end of document");
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        position = 0;
+        limit = 0;
+
+        int read = reader.read(buffer, 0, BUFFER_SIZE);
+        if (read <= 0) {
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at character " + (offset + position));
+    }
+}
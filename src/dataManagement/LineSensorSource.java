@@ -0,0 +1,137 @@
+package dataManagement;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the readings the sensor prints on its serial port straight from a
+ * device file, e.g. /dev/ttyACM0 with the Launchpad connected over USB, or from
+ * a named pipe. Every reading is a line of the form "weight: 12.34 Temp:
+ * 277.15" as printed by arduino_sensor.ino; any other line, like the start up
+ * messages of the sensor, is ignored.
+ * <p>
+ * The serial port has to be configured beforehand, e.g. with
+ * "stty -F /dev/ttyACM0 115200 raw". If the device disappears or the writer of
+ * the pipe closes it, the file is reopened after a short delay.
+ *
+ * @author Aidan
+ *
+ */
+public class LineSensorSource implements SensorSource {
+
+    private static final Pattern FRAME = Pattern
+            .compile("weight:\\s*(-?[0-9.]+)\\s+temp:\\s*(-?[0-9.]+)", Pattern.CASE_INSENSITIVE);
+    private static final long REOPEN_DELAY = 1000; // time in ms
+
+    private final String path;
+    private Thread reader = null;
+    private FileInputStream input = null;
+
+    /**
+     * @param path
+     *            String giving the path of the serial device or named pipe.
+     */
+    public LineSensorSource(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Reads the file on a new thread.
+     */
+    @Override
+    public synchronized void start(Listener listener) {
+        stop();
+
+        reader = new Thread(() -> read(listener), "sensor-line");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Stops reading, no reading is delivered afterwards. A thread still waiting
+     * for a named pipe to be opened by a writer ends once it is.
+     */
+    @Override
+    public synchronized void stop() {
+        if (reader != null) {
+            reader.interrupt();
+            reader = null;
+            closeInput();
+        }
+    }
+
+    private void read(Listener listener) {
+        Thread thread = Thread.currentThread();
+
+        while (isCurrent(thread)) {
+            try (FileInputStream file = new FileInputStream(path);
+                    BufferedReader lines = new BufferedReader(new InputStreamReader(file, StandardCharsets.US_ASCII))) {
+                if (!setInput(thread, file)) {
+                    return;
+                }
+
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    if (!isCurrent(thread)) {
+                        return;
+                    }
+
+                    Matcher frame = FRAME.matcher(line);
+                    if (frame.find()) {
+                        try {
+                            listener.onReading(Double.parseDouble(frame.group(1)),
+                                    Double.parseDouble(frame.group(2)));
+                        } catch (NumberFormatException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (!isCurrent(thread)) {
+                    return;
+                }
+                e.printStackTrace();
+            }
+
+            try {
+                Thread.sleep(REOPEN_DELAY);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private synchronized boolean isCurrent(Thread thread) {
+        return reader == thread;
+    }
+
+    /**
+     * Makes file the input closed by stop() to end a blocked read of it where
+     * the platform allows.
+     *
+     * @return false if the source was stopped while the file was opened.
+     */
+    private synchronized boolean setInput(Thread thread, FileInputStream file) {
+        if (reader != thread) {
+            return false;
+        }
+        input = file;
+        return true;
+    }
+
+    private void closeInput() {
+        if (input != null) {
+            try {
+                input.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            input = null;
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package dataManagement;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * UserStore kept in a memory-mapped file laid out as an open-addressing hash
+ * table. Every change is made in place in the mapping, so the table never has
+ * to be written out as a whole; sync() only forces the pages changed since the
+ * last call to disk. Lookups and updates probe the mapping directly and do not
+ * allocate.
+ *
+ * <pre>
+ * header: int MAGIC, short VERSION, short hashLength, int capacity, int size,
+ *         int currentEpoch, padded to HEADER_SIZE bytes
+ * slots:  capacity * (hashLength bytes hash, byte state, int voteEpoch)
+ * </pre>
+ *
+ * The state byte holds OCCUPIED and the user's flags. Slots are found by
+ * linear probing from the hash of the key; the capacity is a power of two and
+ * is doubled, by rebuilding the table in a new file that replaces the old one,
+ * before the table becomes more than half full. A slot's hash is written
+ * before its state, so a crash leaves each slot either empty or complete.
+ *
+ * @author Aidan
+ *
+ */
+class MappedUserTable implements UserStore {
+
+    private static final int MAGIC = 0x42465554; // "BFUT"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 12;
+    private static final int EPOCH_OFFSET = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int OCCUPIED = 0x80;
+
+    private final Path path;
+    private final Path tempPath;
+    private final int hashLength;
+    private final int slotSize;
+    private final boolean created;
+
+    private FileChannel channel;
+    private volatile MappedByteBuffer map;
+    private int capacity;
+    private int size;
+
+    /**
+     * Opens the table at path, creating an empty one if the file does not
+     * exist.
+     *
+     * @param path
+     *            String giving the full path of the table file.
+     * @param hashLength
+     *            int giving the length in bytes of every user hash.
+     * @throws IOException
+     *             if the file exists but is not a table of hashes of
+     *             hashLength bytes, or could not be opened.
+     */
+    MappedUserTable(String path, int hashLength) throws IOException {
+        this.path = Paths.get(path);
+        this.tempPath = Paths.get(path + ".tmp");
+        this.hashLength = hashLength;
+        this.slotSize = hashLength + 5;
+        this.created = !Files.exists(this.path);
+
+        if (created) {
+            createFile(INITIAL_CAPACITY, FIRST_EPOCH).close();
+            move(tempPath, this.path);
+        }
+        open();
+    }
+
+    /**
+     * @return true if the table file did not exist and was created empty when
+     *         this object was created.
+     */
+    boolean isNew() {
+        return created;
+    }
+
+    /**
+     * @return number of slots in the table.
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getFlags(byte[] hash) {
+        int slot = find(hash);
+        if (slot < 0) {
+            return -1;
+        }
+        return map.get(stateOffset(slot)) & ADMIN;
+    }
+
+    @Override
+    public boolean add(byte[] hash, int flags, int voteEpoch) {
+        int slot = find(hash);
+        if (slot >= 0) {
+            return false;
+        }
+
+        insert(hash, flags, voteEpoch);
+        return true;
+    }
+
+    @Override
+    public void setFlag(byte[] hash, int flag, boolean value) {
+        int slot = find(hash);
+        if (slot < 0) {
+            insert(hash, value ? flag : 0, 0);
+            return;
+        }
+
+        int offset = stateOffset(slot);
+        int state = map.get(offset);
+        map.put(offset, (byte) (value ? state | (flag & ADMIN) : state & ~flag));
+    }
+
+    @Override
+    public int getVoteEpoch(byte[] hash) {
+        int slot = find(hash);
+        if (slot < 0) {
+            return 0;
+        }
+        return map.getInt(stateOffset(slot) + 1);
+    }
+
+    @Override
+    public void setVoteEpoch(byte[] hash, int epoch) {
+        int slot = find(hash);
+        if (slot < 0) {
+            insert(hash, 0, epoch);
+        } else {
+            map.putInt(stateOffset(slot) + 1, epoch);
+        }
+    }
+
+    @Override
+    public int getCurrentEpoch() {
+        return map.getInt(EPOCH_OFFSET);
+    }
+
+    @Override
+    public void setCurrentEpoch(int epoch) {
+        map.putInt(EPOCH_OFFSET, epoch);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (int slot = 0; slot < capacity; slot++) {
+            map.put(stateOffset(slot), (byte) 0);
+        }
+        setSize(0);
+        setCurrentEpoch(FIRST_EPOCH);
+    }
+
+    @Override
+    public void forEach(Visitor visitor) throws IOException {
+        byte[] hash = new byte[hashLength];
+
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = stateOffset(slot);
+            int state = map.get(offset);
+            if ((state & OCCUPIED) != 0) {
+                readHash(map, slotOffset(slot), hash);
+                visitor.visit(hash, state & ADMIN, map.getInt(offset + 1));
+            }
+        }
+    }
+
+    /**
+     * Forces every change made to the table to disk. May be called while
+     * other threads change the table; changes made before the call started
+     * are on disk when it returns.
+     */
+    @Override
+    public void sync() {
+        map.force();
+    }
+
+    /**
+     * @return index of the slot holding hash, or -(index + 1) of the empty
+     *         slot where it would be inserted.
+     */
+    private int find(byte[] hash) {
+        if (hash.length != hashLength) {
+            throw new IllegalArgumentException("Expected a hash of " + hashLength + " bytes");
+        }
+
+        int mask = capacity - 1;
+        int slot = spread(Arrays.hashCode(hash)) & mask;
+
+        while (true) {
+            int state = map.get(stateOffset(slot));
+            if ((state & OCCUPIED) == 0) {
+                return -(slot + 1);
+            }
+            if (matches(slot, hash)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean matches(int slot, byte[] hash) {
+        int offset = slotOffset(slot);
+        for (int i = 0; i < hashLength; i++) {
+            if (map.get(offset + i) != hash[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Inserts hash, which must not be in the table yet.
+     */
+    private void insert(byte[] hash, int flags, int voteEpoch) {
+        if ((size + 1) * 2 > capacity) {
+            try {
+                grow();
+            } catch (IOException e) {
+                // keep filling the current table, which still has room
+                e.printStackTrace();
+                if (size + 1 >= capacity) {
+                    throw new IllegalStateException("User table is full", e);
+                }
+            }
+        }
+
+        int slot = -(find(hash) + 1);
+        putSlot(map, slotOffset(slot), hash, flags, voteEpoch);
+        setSize(size + 1);
+    }
+
+    private void putSlot(MappedByteBuffer target, int offset, byte[] hash, int flags, int voteEpoch) {
+        for (int i = 0; i < hashLength; i++) {
+            target.put(offset + i, hash[i]);
+        }
+        target.putInt(offset + hashLength + 1, voteEpoch);
+        target.put(offset + hashLength, (byte) (OCCUPIED | (flags & ADMIN)));
+    }
+
+    private void readHash(MappedByteBuffer source, int offset, byte[] hash) {
+        for (int i = 0; i < hashLength; i++) {
+            hash[i] = source.get(offset + i);
+        }
+    }
+
+    /**
+     * Rebuilds the table with twice the capacity in a new file, forces it to
+     * disk and moves it over the current file.
+     */
+    private void grow() throws IOException {
+        int newCapacity = capacity * 2;
+        FileChannel newChannel = createFile(newCapacity, getCurrentEpoch());
+
+        try {
+            MappedByteBuffer newMap = newChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) newCapacity * slotSize);
+            byte[] hash = new byte[hashLength];
+
+            for (int slot = 0; slot < capacity; slot++) {
+                int offset = stateOffset(slot);
+                int state = map.get(offset);
+                if ((state & OCCUPIED) != 0) {
+                    readHash(map, slotOffset(slot), hash);
+                    putRehashed(newMap, newCapacity, hash, state, map.getInt(offset + 1));
+                }
+            }
+
+            newMap.putInt(SIZE_OFFSET, size);
+            newMap.force();
+            move(tempPath, path);
+
+            channel.close();
+            channel = newChannel;
+            capacity = newCapacity;
+            map = newMap;
+
+        } catch (IOException e) {
+            newChannel.close();
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+    }
+
+    private void putRehashed(MappedByteBuffer target, int targetCapacity, byte[] hash, int flags, int voteEpoch) {
+        int mask = targetCapacity - 1;
+        int slot = spread(Arrays.hashCode(hash)) & mask;
+
+        while ((target.get(HEADER_SIZE + slot * slotSize + hashLength) & OCCUPIED) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        putSlot(target, HEADER_SIZE + slot * slotSize, hash, flags, voteEpoch);
+    }
+
+    /**
+     * Maps the table file and checks its header. The number of users is
+     * counted rather than read from the header, which may be behind by one
+     * after a crash.
+     */
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long length = channel.size();
+
+        if (length < HEADER_SIZE) {
+            channel.close();
+            throw new IOException(path + " is not a user table");
+        }
+
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        int fileCapacity = header.getInt(CAPACITY_OFFSET);
+
+        if (header.getInt(0) != MAGIC || header.getShort(4) != VERSION
+                || header.getShort(6) != hashLength || Integer.bitCount(fileCapacity) != 1
+                || length != HEADER_SIZE + (long) fileCapacity * slotSize) {
+            channel.close();
+            throw new IOException(path + " is not a user table of " + hashLength + " byte hashes");
+        }
+
+        capacity = fileCapacity;
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+
+        int count = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if ((map.get(stateOffset(slot)) & OCCUPIED) != 0) {
+                count++;
+            }
+        }
+        setSize(count);
+    }
+
+    /**
+     * Creates an empty table file with the given capacity and current epoch at
+     * tempPath.
+     *
+     * @return FileChannel open on the new file.
+     */
+    private FileChannel createFile(int fileCapacity, int currentEpoch) throws IOException {
+        FileChannel newChannel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort((short) hashLength);
+        header.putInt(fileCapacity);
+        header.putInt(0);
+        header.putInt(currentEpoch);
+        header.rewind();
+
+        while (header.hasRemaining()) {
+            newChannel.write(header, header.position());
+        }
+        // the slots are zero, i.e. empty, until written
+        newChannel.write(ByteBuffer.allocate(1), HEADER_SIZE + (long) fileCapacity * slotSize - 1);
+        newChannel.force(true);
+
+        return newChannel;
+    }
+
+    private void setSize(int newSize) {
+        size = newSize;
+        map.putInt(SIZE_OFFSET, newSize);
+    }
+
+    private int slotOffset(int slot) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+
+    private int stateOffset(int slot) {
+        return HEADER_SIZE + slot * slotSize + hashLength;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package dataManagement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs save tasks on a single background thread so that file writes never
+ * block the thread requesting them. Every task is submitted under a key naming
+ * what it saves. The first task submitted for a key is run after the save
+ * delay; a newer task submitted for the same key in the meantime replaces it
+ * without moving the write, so each file is written at most once per save
+ * delay, with the latest data, however many save requests arrive.
+ *
+ * @author Aidan
+ *
+ */
+public class PersistenceService {
+
+    /**
+     * A task writing data to disk.
+     */
+    public interface SaveTask {
+        void save() throws Exception;
+    }
+
+    private final long saveDelay; // in ms
+    private final ScheduledExecutorService executor;
+    private final Map<String, SaveTask> pending = new HashMap<String, SaveTask>();
+
+    // statistics
+    private long submittedCount = 0;
+    private long coalescedCount = 0;
+    private long writeCount = 0;
+    private long totalWriteTime = 0; // in ns
+    private long maxWriteTime = 0; // in ns
+
+    /**
+     * @param saveDelay
+     *            long giving the time in ms from the first task submitted for
+     *            a key to the write.
+     */
+    public PersistenceService(long saveDelay) {
+        this.saveDelay = saveDelay;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues task to be run on the background thread. If a task with the same
+     * key is queued already, task replaces it and runs when it would have;
+     * otherwise task runs after the save delay. Returns immediately.
+     *
+     * @param key
+     *            String naming the data saved by task.
+     * @param task
+     *            SaveTask to run.
+     */
+    public synchronized void submit(String key, SaveTask task) {
+        submittedCount++;
+
+        if (pending.put(key, task) != null) {
+            coalescedCount++;
+        } else {
+            executor.schedule(() -> run(key), saveDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Runs every queued task without waiting for the save delay and blocks
+     * until they are done.
+     */
+    public void flush() {
+        try {
+            executor.submit(() -> {
+                List<String> keys;
+                synchronized (this) {
+                    keys = new ArrayList<String>(pending.keySet());
+                }
+                for (String key : keys) {
+                    run(key);
+                }
+            }).get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void run(String key) {
+        SaveTask task;
+        synchronized (this) {
+            task = pending.remove(key);
+        }
+
+        if (task == null) {
+            return; // already run by flush()
+        }
+
+        long start = System.nanoTime();
+        try {
+            task.save();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        long time = System.nanoTime() - start;
+
+        synchronized (this) {
+            writeCount++;
+            totalWriteTime += time;
+            maxWriteTime = Math.max(maxWriteTime, time);
+        }
+    }
+
+    /**
+     * @return number of tasks waiting to be run.
+     */
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    /**
+     * @return number of tasks submitted so far.
+     */
+    public synchronized long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    /**
+     * @return number of tasks that were replaced by a newer task before they
+     *         were run.
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * @return number of tasks run so far.
+     */
+    public synchronized long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * @return average time in ms taken to run a task, or 0 if none were run.
+     */
+    public synchronized double getAverageWriteLatency() {
+        return writeCount == 0 ? 0 : totalWriteTime / 1e6 / writeCount;
+    }
+
+    /**
+     * @return longest time in ms taken to run a task.
+     */
+    public synchronized double getMaxWriteLatency() {
+        return maxWriteTime / 1e6;
+    }
+}
@@ -0,0 +1,177 @@
+package dataManagement;
+
+/**
+ * Detects pours in a stream of weights of the keg. A pour is a drop of the
+ * weight by at least a minimum volume within a short time after which the
+ * weight settles again.
+ * <p>
+ * A drop starts at the first reading more than the tolerance for noise below
+ * the level the weight last settled on, and ends when a reading is back within
+ * the tolerance. The weight has settled once it stayed within the tolerance of
+ * one reading for the settle time; the mean of the readings since becomes the
+ * new level.
+ * A drop that does not reach the minimum volume within the maximum pour time
+ * is taken as drift of the scale and also moves the level. A drop by more than
+ * the maximum volume, e.g. when the keg is lifted off the scale to be swapped,
+ * is not a pour either; the weight the scale then settles on becomes the
+ * level, as does a rise when a keg is put back. Every reading is O(1) in time
+ * and memory and allocates nothing, whatever the rate of the readings.
+ *
+ * @author Aidan
+ *
+ */
+public class PourDetector {
+
+    private final double minVolume;
+    private final double maxVolume;
+    private final double tolerance;
+    private final long settleTime; // in ms
+    private final long maxPourTime; // in ms
+
+    private boolean initialised = false;
+    private boolean pouring = false;
+    private double level; // weight last settled on
+    private boolean dropping = false;
+    private long dropStart; // time of the first reading of the drop
+    private double anchor; // reading the weight stays within tolerance of
+    private long anchorTime;
+    private double anchorSum; // of the readings since anchorTime
+    private int anchorCount;
+
+    private long lastPourTime = 0;
+    private double lastPourVolume = 0;
+    private long pourCount = 0;
+
+    /**
+     * @param minVolume
+     *            double giving the smallest drop of weight counted as a pour.
+     * @param maxVolume
+     *            double giving the largest drop of weight counted as a pour.
+     * @param tolerance
+     *            double giving by how much readings of a settled weight may
+     *            differ.
+     * @param settleTime
+     *            long giving the time in ms the weight has to stay within
+     *            tolerance to count as settled.
+     * @param maxPourTime
+     *            long giving the time in ms a drop may take to reach
+     *            minVolume.
+     */
+    public PourDetector(double minVolume, double maxVolume, double tolerance, long settleTime, long maxPourTime) {
+        this.minVolume = minVolume;
+        this.maxVolume = maxVolume;
+        this.tolerance = tolerance;
+        this.settleTime = settleTime;
+        this.maxPourTime = maxPourTime;
+    }
+
+    /**
+     * Adds a reading of the weight.
+     *
+     * @return volume of the pour that ended with this reading, 0 if none did.
+     *         The start of the pour is given by getLastPourTime().
+     */
+    public synchronized double add(long time, double weight) {
+        if (!initialised) {
+            initialised = true;
+            level = anchor = weight;
+            anchorTime = time;
+            anchorSum = weight;
+            anchorCount = 1;
+            return 0;
+        }
+
+        if (Math.abs(weight - anchor) > tolerance) {
+            anchor = weight;
+            anchorTime = time;
+            anchorSum = 0;
+            anchorCount = 0;
+        }
+        anchorSum += weight;
+        anchorCount++;
+        double settledWeight = anchorSum / anchorCount;
+        boolean settled = time - anchorTime >= settleTime;
+
+        if (!pouring) {
+            if (level - weight <= tolerance) {
+                dropping = false;
+            } else if (!dropping) {
+                dropping = true;
+                dropStart = time;
+            }
+
+            if (dropping && level - weight >= minVolume) {
+                pouring = true;
+            } else if (dropping && time - dropStart > maxPourTime) {
+                // too slow for a pour
+                level = weight;
+                dropping = false;
+            } else if (settled) {
+                level = settledWeight;
+            }
+            return 0;
+        }
+
+        if (!settled) {
+            return 0;
+        }
+
+        double volume = level - settledWeight;
+        pouring = false;
+        dropping = false;
+        level = settledWeight;
+        if (volume < minVolume || volume > maxVolume) {
+            return 0;
+        }
+
+        lastPourTime = dropStart;
+        lastPourVolume = volume;
+        pourCount++;
+        return volume;
+    }
+
+    /**
+     * Forgets the level, e.g. when the scale is tared.
+     */
+    public synchronized void reset() {
+        initialised = false;
+        pouring = false;
+        dropping = false;
+    }
+
+    /**
+     * @return true while a drop has started but the weight has not settled.
+     */
+    public synchronized boolean isPouring() {
+        return pouring;
+    }
+
+    /**
+     * @return weight last settled on.
+     */
+    public synchronized double getLevel() {
+        return level;
+    }
+
+    /**
+     * @return time in ms since the epoch the last pour started, 0 if there
+     *         was none.
+     */
+    public synchronized long getLastPourTime() {
+        return lastPourTime;
+    }
+
+    /**
+     * @return volume of the last pour, 0 if there was none.
+     */
+    public synchronized double getLastPourVolume() {
+        return lastPourVolume;
+    }
+
+    /**
+     * @return number of pours detected.
+     */
+    public synchronized long getPourCount() {
+        return pourCount;
+    }
+}
@@ -0,0 +1,36 @@
+package dataManagement;
+
+/**
+ * Immutable record of a pour from the keg.
+ * 
+ * @author Aidan
+ *
+ */
+public final class PourEvent {
+
+    private final long time; // in ms since the epoch
+    private final double volume;
+    private final String keg;
+
+    public PourEvent(long time, double volume, String keg) {
+        this.time = time;
+        this.volume = volume;
+        this.keg = keg;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public double getVolume() {
+        return volume;
+    }
+
+    /**
+     * @return name of the beer in the keg at the time of the pour, the empty
+     *         string if it was not known.
+     */
+    public String getKeg() {
+        return keg;
+    }
+}
@@ -0,0 +1,174 @@
+package dataManagement;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only log of every pour from the keg. Pours are written to disk as one
+ * "time volume keg" record each through a WriteAheadLog, so adding a pour never
+ * blocks, and are kept in memory in order of time and by keg so they can be
+ * queried by day and by keg.
+ *
+ * @author Aidan
+ *
+ */
+public class PourLog {
+
+    private final WriteAheadLog log;
+    private final List<PourEvent> pours = new ArrayList<PourEvent>();
+    private final Map<String, List<PourEvent>> poursByKeg = new HashMap<String, List<PourEvent>>();
+
+    /**
+     * Opens the log at path and reads the pours already in it. Records that
+     * cannot be read are skipped.
+     *
+     * @param path
+     *            String giving the full path of the log file.
+     */
+    public PourLog(String path) {
+        log = new WriteAheadLog(path);
+
+        try {
+            for (String record : log.readRecords()) {
+                String[] fields = record.split(" ", 3);
+                try {
+                    insert(new PourEvent(Long.parseLong(fields[0]), Double.parseDouble(fields[1]),
+                            fields.length > 2 ? fields[2] : ""));
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Records pour and queues it to be written to disk. Returns immediately.
+     */
+    public synchronized void add(PourEvent pour) {
+        insert(pour);
+        log.append(pour.getTime() + " " + pour.getVolume() + " " + pour.getKeg().replace('\n', ' '));
+    }
+
+    /**
+     * Blocks until every pour added before this call is on disk.
+     */
+    public void flush() {
+        try {
+            log.sync();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes every pour added so far to disk and closes the log. Pours added
+     * afterwards are kept in memory only.
+     */
+    public void close() {
+        try {
+            log.close();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return List<PourEvent> of the pours that started from time from up to
+     *         but excluding time to, in order of time.
+     */
+    public synchronized List<PourEvent> getPours(long from, long to) {
+        return new ArrayList<PourEvent>(pours.subList(lowerBound(from), lowerBound(to)));
+    }
+
+    /**
+     * @return List<PourEvent> of the pours on day in zone, in order of time.
+     */
+    public List<PourEvent> getPoursOfDay(LocalDate day, ZoneId zone) {
+        return getPours(day.atStartOfDay(zone).toInstant().toEpochMilli(),
+                day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+    }
+
+    /**
+     * @return List<PourEvent> of the pours from keg, in order of time.
+     */
+    public synchronized List<PourEvent> getPoursOfKeg(String keg) {
+        List<PourEvent> kegPours = poursByKeg.get(keg);
+        return kegPours == null ? Collections.<PourEvent> emptyList() : new ArrayList<PourEvent>(kegPours);
+    }
+
+    /**
+     * @return total volume of the pours in the given list.
+     */
+    public static double getTotalVolume(List<PourEvent> pours) {
+        double volume = 0;
+        for (PourEvent pour : pours) {
+            volume += pour.getVolume();
+        }
+        return volume;
+    }
+
+    /**
+     * @return number of pours recorded.
+     */
+    public synchronized int size() {
+        return pours.size();
+    }
+
+    private void insert(PourEvent pour) {
+        // pours are added in order of time, so this is almost always the end
+        pours.add(upperBound(pour.getTime()), pour);
+
+        List<PourEvent> kegPours = poursByKeg.get(pour.getKeg());
+        if (kegPours == null) {
+            kegPours = new ArrayList<PourEvent>();
+            poursByKeg.put(pour.getKeg(), kegPours);
+        }
+        int i = kegPours.size();
+        while (i > 0 && kegPours.get(i - 1).getTime() > pour.getTime()) {
+            i--;
+        }
+        kegPours.add(i, pour);
+    }
+
+    /**
+     * @return index of the first pour at or after time.
+     */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = pours.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (pours.get(mid).getTime() < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return index of the first pour after time.
+     */
+    private int upperBound(long time) {
+        int low = 0;
+        int high = pours.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (pours.get(mid).getTime() <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,185 @@
+package dataManagement;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a recorded or synthetic trace of readings, keeping the time between
+ * readings divided by a speed factor, e.g. 1 to replay in real time or 1000
+ * to replay a day in under a minute and a half. Used to try the application
+ * and stress its ingestion path and GUI without a sensor.
+ * <p>
+ * A trace file holds one "time,weight,temp" line per reading with the time in
+ * ms, in order of time. Empty lines and lines starting with '#' are skipped.
+ * The replay runs once on a thread of its own and starts over from the first
+ * reading when the source is started again.
+ *
+ * @author Aidan
+ *
+ */
+public class ReplaySensorSource implements SensorSource {
+
+    private final long[] times;
+    private final double[] weights;
+    private final double[] temps;
+    private final int count;
+    private final double speed;
+
+    private Thread thread = null; // of the current run
+    private volatile int replayedCount = 0;
+    private volatile boolean finished = false;
+
+    /**
+     * @param times
+     *            long[] giving the time in ms of every reading, in order.
+     * @param weights
+     *            double[] giving the weight of every reading.
+     * @param temps
+     *            double[] giving the temp of every reading.
+     * @param count
+     *            int giving the number of readings in the arrays.
+     * @param speed
+     *            double giving how many times faster than recorded the trace
+     *            is replayed.
+     */
+    public ReplaySensorSource(long[] times, double[] weights, double[] temps, int count, double speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("Speed must be positive");
+        }
+        this.times = times;
+        this.weights = weights;
+        this.temps = temps;
+        this.count = count;
+        this.speed = speed;
+    }
+
+    /**
+     * Reads the trace file at path.
+     *
+     * @param speed
+     *            double giving how many times faster than recorded the trace
+     *            is replayed.
+     * @throws IOException
+     *             if the file could not be read or holds a malformed line.
+     */
+    public static ReplaySensorSource load(String path, double speed) throws IOException {
+        long[] times = new long[1024];
+        double[] weights = new double[1024];
+        double[] temps = new double[1024];
+        int count = 0;
+
+        BufferedReader reader = new BufferedReader(new FileReader(path));
+        try {
+            String line = reader.readLine();
+            while (line != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    String[] fields = line.split(",");
+                    if (fields.length != 3) {
+                        throw new IOException("Malformed reading: " + line);
+                    }
+                    if (count == times.length) {
+                        times = Arrays.copyOf(times, count * 2);
+                        weights = Arrays.copyOf(weights, count * 2);
+                        temps = Arrays.copyOf(temps, count * 2);
+                    }
+                    try {
+                        times[count] = Long.parseLong(fields[0].trim());
+                        weights[count] = Double.parseDouble(fields[1].trim());
+                        temps[count] = Double.parseDouble(fields[2].trim());
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Malformed reading: " + line, e);
+                    }
+                    count++;
+                }
+                line = reader.readLine();
+            }
+        } finally {
+            reader.close();
+        }
+
+        return new ReplaySensorSource(times, weights, temps, count, speed);
+    }
+
+    /**
+     * Starts replaying from the first reading.
+     */
+    @Override
+    public synchronized void start(Listener listener) {
+        stop();
+        replayedCount = 0;
+        finished = false;
+
+        Thread run = new Thread(() -> replay(listener), "sensor-replay");
+        run.setDaemon(true);
+        thread = run;
+        run.start();
+    }
+
+    /**
+     * Stops the replay. No reading is delivered after this returns, unless
+     * called by the listener itself.
+     */
+    @Override
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            if (thread != Thread.currentThread()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            thread = null;
+        }
+    }
+
+    private void replay(Listener listener) {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < count; i++) {
+            long due = start + (long) ((times[i] - times[0]) * 1000000.0 / speed);
+            long wait = due - System.nanoTime();
+            while (wait > 0 && !Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(wait);
+                wait = due - System.nanoTime();
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+
+            listener.onReading(weights[i], temps[i]);
+            replayedCount = i + 1;
+        }
+        finished = true;
+    }
+
+    /**
+     * @return number of readings in the trace.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return number of readings delivered since the last start.
+     */
+    public int getReplayedCount() {
+        return replayedCount;
+    }
+
+    /**
+     * @return true once every reading was delivered.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+}
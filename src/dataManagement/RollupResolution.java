@@ -0,0 +1,47 @@
+package dataManagement;
+
+/**
+ * Resolutions at which SensorRollups aggregates sensor readings. Every
+ * resolution keeps its aggregates in segment files each covering a fixed span
+ * of time, so old aggregates are removed by deleting whole files.
+ * 
+ * @author Aidan
+ *
+ */
+public enum RollupResolution {
+
+    MINUTE(60000L, 86400000L, 7 * 86400000L),
+    HOUR(3600000L, 30 * 86400000L, 90 * 86400000L),
+    DAY(86400000L, 365 * 86400000L, 5 * 365 * 86400000L);
+
+    private final long width;
+    private final long segmentSpan;
+    private final long defaultRetention;
+
+    private RollupResolution(long width, long segmentSpan, long defaultRetention) {
+        this.width = width;
+        this.segmentSpan = segmentSpan;
+        this.defaultRetention = defaultRetention;
+    }
+
+    /**
+     * @return time in ms covered by one aggregate.
+     */
+    public long getWidth() {
+        return width;
+    }
+
+    /**
+     * @return time in ms covered by one segment file.
+     */
+    public long getSegmentSpan() {
+        return segmentSpan;
+    }
+
+    /**
+     * @return time in ms aggregates are kept for unless configured otherwise.
+     */
+    public long getDefaultRetention() {
+        return defaultRetention;
+    }
+}
@@ -0,0 +1,430 @@
+package dataManagement;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rolls sensor readings up into aggregates of the minimum, maximum and mean
+ * weight and temp and the number of readings per minute, hour and day, see
+ * RollupResolution. Every aggregate is appended to a segment file once its
+ * minute, hour or day is over, so weeks of history are available at startup
+ * without keeping or replaying every reading. The means of every resolution
+ * are also kept in memory as TimeSeries for charting.
+ * <p>
+ * Segment files are named after their resolution and the start of the span
+ * they cover, e.g. MINUTE-1500000000000.seg, and hold fixed-width records:
+ *
+ * <pre>
+ * long start, int count, double minWeight, double maxWeight, double meanWeight,
+ * double minTemp, double maxTemp, double meanTemp
+ * </pre>
+ *
+ * flush() appends the aggregates still open, e.g. when the program is closed.
+ * Readings later in the same minute, hour or day then produce a second record
+ * with the same start, which is merged with the first whenever segments are
+ * read. Compaction deletes segments older than the retention of their
+ * resolution and rewrites segments holding such duplicate records or a
+ * partially written last record. It runs on startup and then at most once
+ * every compaction interval.
+ * <p>
+ * Retention is measured back from the latest reading, not the clock, so
+ * history is not lost while the sensor is switched off.
+ *
+ * @author Aidan
+ *
+ */
+public class SensorRollups {
+
+    /**
+     * Receives aggregates read by read().
+     */
+    public interface Visitor {
+        void visit(long start, int count, double minWeight, double maxWeight, double meanWeight, double minTemp,
+                double maxTemp, double meanTemp);
+    }
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int RECORD_SIZE = 8 + 4 + 6 * 8;
+    private static final long DEFAULT_COMPACTION_INTERVAL = 3600000; // time in ms
+
+    /**
+     * Aggregate of the readings of one minute, hour or day.
+     */
+    private static class Bucket {
+        long start;
+        int count = 0;
+        double minWeight, maxWeight, sumWeight;
+        double minTemp, maxTemp, sumTemp;
+
+        void add(double weight, double temp) {
+            if (count == 0) {
+                minWeight = maxWeight = weight;
+                minTemp = maxTemp = temp;
+                sumWeight = sumTemp = 0;
+            }
+            count++;
+            minWeight = Math.min(minWeight, weight);
+            maxWeight = Math.max(maxWeight, weight);
+            sumWeight += weight;
+            minTemp = Math.min(minTemp, temp);
+            maxTemp = Math.max(maxTemp, temp);
+            sumTemp += temp;
+        }
+
+        void merge(Bucket other) {
+            if (count == 0) {
+                start = other.start;
+                minWeight = other.minWeight;
+                maxWeight = other.maxWeight;
+                minTemp = other.minTemp;
+                maxTemp = other.maxTemp;
+                sumWeight = sumTemp = 0;
+            }
+            count += other.count;
+            minWeight = Math.min(minWeight, other.minWeight);
+            maxWeight = Math.max(maxWeight, other.maxWeight);
+            sumWeight += other.sumWeight;
+            minTemp = Math.min(minTemp, other.minTemp);
+            maxTemp = Math.max(maxTemp, other.maxTemp);
+            sumTemp += other.sumTemp;
+        }
+
+        void write(ByteBuffer record) {
+            record.clear();
+            record.putLong(start).putInt(count);
+            record.putDouble(minWeight).putDouble(maxWeight).putDouble(sumWeight / count);
+            record.putDouble(minTemp).putDouble(maxTemp).putDouble(sumTemp / count);
+            record.flip();
+        }
+
+        static Bucket read(ByteBuffer records) {
+            Bucket bucket = new Bucket();
+            bucket.start = records.getLong();
+            bucket.count = records.getInt();
+            bucket.minWeight = records.getDouble();
+            bucket.maxWeight = records.getDouble();
+            bucket.sumWeight = records.getDouble() * bucket.count;
+            bucket.minTemp = records.getDouble();
+            bucket.maxTemp = records.getDouble();
+            bucket.sumTemp = records.getDouble() * bucket.count;
+            return bucket;
+        }
+
+        void visit(Visitor visitor) {
+            visitor.visit(start, count, minWeight, maxWeight, sumWeight / count, minTemp, maxTemp, sumTemp / count);
+        }
+    }
+
+    private final File directory;
+    private final long compactionInterval; // in ms
+    private final Map<RollupResolution, Long> retention = new EnumMap<>(RollupResolution.class);
+    private final Map<RollupResolution, Bucket> open = new EnumMap<>(RollupResolution.class);
+    private final Map<RollupResolution, TimeSeries> weightMeans = new EnumMap<>(RollupResolution.class);
+    private final Map<RollupResolution, TimeSeries> tempMeans = new EnumMap<>(RollupResolution.class);
+    private final Map<RollupResolution, FileChannel> segments = new EnumMap<>(RollupResolution.class);
+    private final Map<RollupResolution, Long> segmentStarts = new EnumMap<>(RollupResolution.class);
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+
+    private long latestTime = Long.MIN_VALUE; // of the latest reading
+    private long lastCompaction;
+
+    /**
+     * Loads the aggregates kept in directory with the default retention of
+     * every resolution.
+     *
+     * @param directory
+     *            String giving the full path of the directory holding the
+     *            segment files.
+     */
+    public SensorRollups(String directory) {
+        this(directory, new EnumMap<RollupResolution, Long>(RollupResolution.class), DEFAULT_COMPACTION_INTERVAL);
+    }
+
+    /**
+     * Loads the aggregates kept in directory.
+     *
+     * @param directory
+     *            String giving the full path of the directory holding the
+     *            segment files.
+     * @param retention
+     *            Map giving the time in ms aggregates of a resolution are kept
+     *            for, 0 to keep them forever. Resolutions missing from the map
+     *            keep their default retention.
+     * @param compactionInterval
+     *            long giving the minimum time in ms between two compactions.
+     */
+    public SensorRollups(String directory, Map<RollupResolution, Long> retention, long compactionInterval) {
+        this.directory = new File(directory);
+        this.compactionInterval = compactionInterval;
+        this.directory.mkdirs();
+
+        for (RollupResolution resolution : RollupResolution.values()) {
+            long kept = retention.getOrDefault(resolution, resolution.getDefaultRetention());
+            long capacity = (kept > 0 ? kept : resolution.getDefaultRetention()) / resolution.getWidth();
+
+            this.retention.put(resolution, kept);
+            open.put(resolution, new Bucket());
+            weightMeans.put(resolution, new TimeSeries((int) Math.min(capacity, Integer.MAX_VALUE)));
+            tempMeans.put(resolution, new TimeSeries((int) Math.min(capacity, Integer.MAX_VALUE)));
+        }
+
+        load();
+        compact();
+    }
+
+    /**
+     * Adds a reading to the open aggregate of every resolution, appending
+     * aggregates whose minute, hour or day is over to their segment. A time
+     * before the latest reading is taken as the time of the latest reading.
+     */
+    public synchronized void add(long time, double weight, double temp) {
+        time = Math.max(time, latestTime);
+        latestTime = time;
+
+        for (RollupResolution resolution : RollupResolution.values()) {
+            Bucket bucket = open.get(resolution);
+            long start = floor(time, resolution.getWidth());
+
+            if (bucket.count > 0 && bucket.start != start) {
+                append(resolution, bucket);
+                weightMeans.get(resolution).add(bucket.start, bucket.sumWeight / bucket.count);
+                tempMeans.get(resolution).add(bucket.start, bucket.sumTemp / bucket.count);
+                bucket.count = 0;
+            }
+            bucket.start = start;
+            bucket.add(weight, temp);
+        }
+
+        if (time - lastCompaction >= compactionInterval) {
+            compact();
+        }
+    }
+
+    /**
+     * Appends the open aggregates of every resolution and forces all segments
+     * to disk.
+     */
+    public synchronized void flush() {
+        for (RollupResolution resolution : RollupResolution.values()) {
+            Bucket bucket = open.get(resolution);
+            if (bucket.count > 0) {
+                append(resolution, bucket);
+                bucket.count = 0;
+            }
+
+            FileChannel channel = segments.get(resolution);
+            if (channel != null) {
+                try {
+                    channel.force(false);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return TimeSeries of the mean weight of every aggregate of resolution
+     *         that is over, by its start.
+     */
+    public TimeSeries getWeightMeans(RollupResolution resolution) {
+        return weightMeans.get(resolution);
+    }
+
+    /**
+     * @return TimeSeries of the mean temp of every aggregate of resolution
+     *         that is over, by its start.
+     */
+    public TimeSeries getTempMeans(RollupResolution resolution) {
+        return tempMeans.get(resolution);
+    }
+
+    /**
+     * Reads the aggregates of resolution written to disk that start between
+     * from and to inclusive, oldest first.
+     */
+    public synchronized void read(RollupResolution resolution, long from, long to, Visitor visitor)
+            throws IOException {
+        for (File segment : listSegments(resolution)) {
+            long segmentStart = segmentStart(resolution, segment);
+            if (segmentStart > to || segmentStart + resolution.getSegmentSpan() <= from) {
+                continue;
+            }
+
+            for (Bucket bucket : readSegment(segment)) {
+                if (bucket.start >= from && bucket.start <= to) {
+                    bucket.visit(visitor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes segments older than the retention of their resolution and
+     * rewrites segments holding records to be merged or a partially written
+     * record.
+     */
+    public synchronized void compact() {
+        long now = latestTime == Long.MIN_VALUE ? System.currentTimeMillis() : latestTime;
+        lastCompaction = now;
+
+        for (RollupResolution resolution : RollupResolution.values()) {
+            long kept = retention.get(resolution);
+            Long current = segmentStarts.get(resolution);
+
+            for (File segment : listSegments(resolution)) {
+                long segmentStart = segmentStart(resolution, segment);
+                if (current != null && current == segmentStart) {
+                    continue; // still appended to
+                }
+
+                try {
+                    if (kept > 0 && segmentStart + resolution.getSegmentSpan() <= now - kept) {
+                        Files.delete(segment.toPath());
+                    } else {
+                        rewriteIfNeeded(segment);
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes all segments.
+     */
+    public synchronized void close() {
+        for (FileChannel channel : segments.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        segments.clear();
+        segmentStarts.clear();
+    }
+
+    private void load() {
+        for (RollupResolution resolution : RollupResolution.values()) {
+            for (File segment : listSegments(resolution)) {
+                try {
+                    for (Bucket bucket : readSegment(segment)) {
+                        weightMeans.get(resolution).add(bucket.start, bucket.sumWeight / bucket.count);
+                        tempMeans.get(resolution).add(bucket.start, bucket.sumTemp / bucket.count);
+                        latestTime = Math.max(latestTime, bucket.start);
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void append(RollupResolution resolution, Bucket bucket) {
+        long segmentStart = floor(bucket.start, resolution.getSegmentSpan());
+
+        try {
+            FileChannel channel = segments.get(resolution);
+            if (channel == null || segmentStarts.get(resolution) != segmentStart) {
+                if (channel != null) {
+                    channel.close();
+                }
+                channel = FileChannel.open(segmentFile(resolution, segmentStart).toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                segments.put(resolution, channel);
+                segmentStarts.put(resolution, segmentStart);
+            }
+
+            bucket.write(record);
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return aggregates held in segment, records with the same start merged.
+     */
+    private static List<Bucket> readSegment(File segment) throws IOException {
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(segment.toPath()));
+        List<Bucket> buckets = new ArrayList<Bucket>();
+        Bucket last = null;
+
+        // a partially written last record is ignored
+        while (records.remaining() >= RECORD_SIZE) {
+            Bucket bucket = Bucket.read(records);
+            if (bucket.count <= 0) {
+                continue;
+            } else if (last != null && last.start == bucket.start) {
+                last.merge(bucket);
+            } else {
+                buckets.add(bucket);
+                last = bucket;
+            }
+        }
+        return buckets;
+    }
+
+    private void rewriteIfNeeded(File segment) throws IOException {
+        List<Bucket> buckets = readSegment(segment);
+        if (segment.length() == (long) buckets.size() * RECORD_SIZE) {
+            return;
+        }
+
+        File temp = new File(segment.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Bucket bucket : buckets) {
+                bucket.write(record);
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            }
+            channel.force(false);
+        }
+        Files.move(temp.toPath(), segment.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return segment files of resolution, oldest first.
+     */
+    private File[] listSegments(RollupResolution resolution) {
+        String prefix = resolution.name() + "-";
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(SEGMENT_SUFFIX)
+                && name.substring(prefix.length(), name.length() - SEGMENT_SUFFIX.length()).matches("-?[0-9]+"));
+        if (files == null) {
+            return new File[0];
+        }
+
+        Arrays.sort(files, (a, b) -> Long.compare(segmentStart(resolution, a), segmentStart(resolution, b)));
+        return files;
+    }
+
+    private File segmentFile(RollupResolution resolution, long segmentStart) {
+        return new File(directory, resolution.name() + "-" + segmentStart + SEGMENT_SUFFIX);
+    }
+
+    private static long segmentStart(RollupResolution resolution, File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(resolution.name().length() + 1, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static long floor(long time, long width) {
+        return Math.floorDiv(time, width) * width;
+    }
+}
@@ -0,0 +1,32 @@
+package dataManagement;
+
+/**
+ * Immutable reading of the keg sensor together with the time it was received.
+ * 
+ * @author Aidan
+ *
+ */
+public final class SensorSample {
+
+    private final double weight;
+    private final double temp;
+    private final long timestamp; // in ms since the epoch
+
+    public SensorSample(double weight, double temp, long timestamp) {
+        this.weight = weight;
+        this.temp = temp;
+        this.timestamp = timestamp;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public double getTemp() {
+        return temp;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,30 @@
+package dataManagement;
+
+/**
+ * A source of keg sensor readings, e.g. the latest dweet polled from Dweet.io
+ * or readings pushed by the sensor over the local network. A source delivers
+ * readings on a thread of its own from start() until stop().
+ *
+ * @author Aidan
+ *
+ */
+public interface SensorSource {
+
+    /**
+     * Receives the readings of a SensorSource.
+     */
+    public interface Listener {
+        void onReading(double weight, double temp);
+    }
+
+    /**
+     * Starts delivering readings to listener. A stopped source may be started
+     * again.
+     */
+    void start(Listener listener);
+
+    /**
+     * Stops delivering readings.
+     */
+    void stop();
+}
@@ -0,0 +1,34 @@
+package dataManagement;
+
+/**
+ * Selects how DataManager stores BEER_FILE and USER_FILE on disk.
+ * 
+ * @author Aidan
+ *
+ */
+public enum SnapshotFormat {
+
+    /**
+     * Human readable JSON files, beer_data.json and user_data.json.
+     */
+    JSON,
+
+    /**
+     * Compact binary snapshots, beer_data.bin and user_data.bin, that are
+     * memory-mapped when read, see BinarySnapshot. Existing JSON files are
+     * imported when no snapshot exists yet and can still be written with
+     * DataManager.exportJson().
+     */
+    BINARY,
+
+    /**
+     * Users kept in a memory-mapped hash table, user_table.bin, that is
+     * updated in place so checking or changing a user never allocates and
+     * never requires the table to be rewritten, see MappedUserTable. Beers
+     * are stored as in BINARY. Existing snapshots or JSON files are imported
+     * when the table does not exist yet; afterwards the table is the only up
+     * to date copy of the users, so DataManager refuses to start if it cannot
+     * be opened.
+     */
+    MAPPED
+}
@@ -0,0 +1,167 @@
+package dataManagement;
+
+/**
+ * Detects the fridge warming up, e.g. when the compressor fails or the door is
+ * left open. The mean and variance of the temperature are tracked as
+ * exponentially weighted averages in which every reading counts half for every
+ * half-life that passed since it was taken, and every reading is scored by how
+ * many standard deviations it is above the mean.
+ * <p>
+ * The fridge counts as warming once the score stayed above the raise score for
+ * the hold time and stops counting as warming once it stayed below the lower
+ * clear score for the hold time, so a short opening of the door or noise
+ * around the threshold does not toggle the state. A reading moves the mean
+ * and variance by no more than a reading at the clear score would and while
+ * warming readings are not added at all, so a slow failure does not become
+ * the new normal before it is detected. Every reading is O(1) in time and
+ * memory and allocates nothing.
+ *
+ * @author Aidan
+ *
+ */
+public class TempAnomalyDetector {
+
+    private final double decayRate; // per ms
+    private final double raiseScore;
+    private final double clearScore;
+    private final long holdTime; // in ms
+    private final double minDeviation;
+    private final long warmUpTime; // in ms
+
+    private long firstTime;
+    private long latestTime;
+    private double weightSum = 0; // sum of the weights of the readings
+    private double mean = 0;
+    private double variance = 0;
+
+    private boolean warming = false;
+    private long crossedTime = -1; // time the score crossed the other threshold
+    private double score = 0;
+    private long warmingCount = 0;
+
+    /**
+     * @param halfLife
+     *            long giving the time in ms after which a reading counts half
+     *            for the mean and variance.
+     * @param raiseScore
+     *            double giving the number of standard deviations above the mean
+     *            the temperature has to stay to count as warming.
+     * @param clearScore
+     *            double giving the number of standard deviations above the mean
+     *            the temperature has to stay below to stop counting as warming.
+     * @param holdTime
+     *            long giving the time in ms a score has to stay above or below
+     *            a threshold to change the state.
+     * @param minDeviation
+     *            double giving the smallest standard deviation scores are
+     *            computed with, so a steady temperature does not make every
+     *            small change an anomaly.
+     * @param warmUpTime
+     *            long giving the time in ms of readings needed before the
+     *            fridge can count as warming.
+     */
+    public TempAnomalyDetector(long halfLife, double raiseScore, double clearScore, long holdTime,
+            double minDeviation, long warmUpTime) {
+        if (clearScore > raiseScore) {
+            throw new IllegalArgumentException("Clear score must not be above raise score");
+        }
+        this.decayRate = Math.log(2) / halfLife;
+        this.raiseScore = raiseScore;
+        this.clearScore = clearScore;
+        this.holdTime = holdTime;
+        this.minDeviation = minDeviation;
+        this.warmUpTime = warmUpTime;
+    }
+
+    /**
+     * Adds a reading. A time before the latest reading is taken as the time
+     * of the latest reading.
+     *
+     * @return true if the fridge counts as warming after this reading.
+     */
+    public synchronized boolean add(long time, double temp) {
+        if (weightSum == 0) {
+            firstTime = latestTime = time;
+            weightSum = 1;
+            mean = temp;
+            variance = 0;
+            return warming;
+        }
+
+        time = Math.max(time, latestTime);
+        double deviation = Math.max(Math.sqrt(variance), minDeviation);
+        score = (temp - mean) / deviation;
+        boolean beyond = warming ? score < clearScore : score > raiseScore;
+
+        if (!beyond) {
+            crossedTime = -1;
+        } else if (crossedTime < 0) {
+            crossedTime = time;
+        }
+        if (crossedTime >= 0 && time - crossedTime >= holdTime && time - firstTime >= warmUpTime) {
+            warming = !warming;
+            crossedTime = -1;
+            if (warming) {
+                warmingCount++;
+            }
+        }
+
+        if (!warming) {
+            double decay = Math.exp(-decayRate * (time - latestTime));
+            weightSum = weightSum * decay + 1;
+            double limit = Math.max(clearScore, 1) * deviation;
+            double delta = Math.max(-limit, Math.min(limit, temp - mean));
+            double share = 1 / weightSum;
+            mean += share * delta;
+            variance = (1 - share) * (variance + share * delta * delta);
+        }
+        latestTime = time;
+        return warming;
+    }
+
+    /**
+     * Forgets all readings and clears the warming state.
+     */
+    public synchronized void reset() {
+        weightSum = 0;
+        warming = false;
+        crossedTime = -1;
+        score = 0;
+    }
+
+    /**
+     * @return true if the fridge counts as warming.
+     */
+    public synchronized boolean isWarming() {
+        return warming;
+    }
+
+    /**
+     * @return number of standard deviations the latest reading was above the
+     *         mean.
+     */
+    public synchronized double getScore() {
+        return score;
+    }
+
+    /**
+     * @return weighted mean of the readings while not warming.
+     */
+    public synchronized double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return weighted standard deviation of the readings while not warming.
+     */
+    public synchronized double getStdDev() {
+        return Math.sqrt(variance);
+    }
+
+    /**
+     * @return number of times the fridge started counting as warming.
+     */
+    public synchronized long getWarmingCount() {
+        return warmingCount;
+    }
+}
@@ -0,0 +1,164 @@
+package dataManagement;
+
+/**
+ * Fixed-capacity history of timestamped values kept in a ring buffer of
+ * primitive arrays. Adding a value takes constant time and allocates nothing;
+ * once the buffer is full the oldest value is overwritten. Timestamps never
+ * decrease, so ranges of time are found by binary search.
+ * <p>
+ * Values may be added and queried from different threads.
+ *
+ * @author Aidan
+ *
+ */
+public class TimeSeries {
+
+    private final long[] times; // in ms since the epoch
+    private final double[] values;
+    private int head = 0; // index of the oldest value
+    private int size = 0;
+
+    /**
+     * @param capacity
+     *            int giving the number of values kept.
+     */
+    public TimeSeries(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        times = new long[capacity];
+        values = new double[capacity];
+    }
+
+    /**
+     * Adds value at time, overwriting the oldest value if the series is full.
+     * A time before the latest time in the series is taken as the latest time.
+     */
+    public synchronized void add(long time, double value) {
+        if (size > 0) {
+            time = Math.max(time, getTime(size - 1));
+        }
+
+        int index;
+        if (size < times.length) {
+            index = slot(size++);
+        } else {
+            index = head;
+            head = slot(1);
+        }
+        times[index] = time;
+        values[index] = value;
+    }
+
+    /**
+     * @return number of values in the series.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return maximum number of values kept.
+     */
+    public int capacity() {
+        return times.length;
+    }
+
+    /**
+     * @param index
+     *            int between 0 for the oldest and size() - 1 for the latest
+     *            value.
+     * @return time of the value at index.
+     */
+    public synchronized long getTime(int index) {
+        checkIndex(index);
+        return times[slot(index)];
+    }
+
+    /**
+     * @param index
+     *            int between 0 for the oldest and size() - 1 for the latest
+     *            value.
+     * @return value at index.
+     */
+    public synchronized double getValue(int index) {
+        checkIndex(index);
+        return values[slot(index)];
+    }
+
+    /**
+     * @return number of values with a time between from and to inclusive.
+     */
+    public synchronized int count(long from, long to) {
+        return Math.max(0, upperBound(to) - lowerBound(from));
+    }
+
+    /**
+     * Copies the values with a time between from and to inclusive into
+     * outTimes and outValues, oldest first. If there are more values than fit
+     * into the arrays, the latest ones are copied.
+     *
+     * @return number of values copied.
+     */
+    public int copyRange(long from, long to, long[] outTimes, double[] outValues) {
+        return copyRange(from, to, outTimes, outValues, 0);
+    }
+
+    /**
+     * Copies the values with a time between from and to inclusive into
+     * outTimes and outValues starting at offset, oldest first. If there are
+     * more values than fit into the arrays, the latest ones are copied.
+     *
+     * @return number of values copied.
+     */
+    public synchronized int copyRange(long from, long to, long[] outTimes, double[] outValues, int offset) {
+        int end = upperBound(to);
+        int space = Math.max(0, Math.min(outTimes.length, outValues.length) - offset);
+        int start = Math.max(lowerBound(from), end - space);
+        int copied = Math.max(0, end - start);
+
+        for (int i = 0; i < copied; i++) {
+            int index = slot(start + i);
+            outTimes[offset + i] = times[index];
+            outValues[offset + i] = values[index];
+        }
+        return copied;
+    }
+
+    /**
+     * @return index of the first value with a time at or after time, size if
+     *         there is none.
+     */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[slot(mid)] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return index of the first value with a time after time, size if there
+     *         is none.
+     */
+    private int upperBound(long time) {
+        return time == Long.MAX_VALUE ? size : lowerBound(time + 1);
+    }
+
+    private int slot(int index) {
+        int slot = head + index;
+        return slot >= times.length ? slot - times.length : slot;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package dataManagement;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Receives readings pushed over the local network. Every reading is a UDP
+ * datagram holding the same JSON content the sensor dweets, e.g.
+ * {"weight":12.5,"temp":4.0}, so readings arrive within milliseconds instead
+ * of waiting for the next poll of Dweet.io. The sensor firmware in this
+ * repository only dweets; this source is meant for sensors that push.
+ * Datagrams that do not hold a reading are dropped without a word, so
+ * whoever can reach the port cannot flood the log; only their number is kept.
+ *
+ * @author Aidan
+ *
+ */
+public class UdpSensorSource implements SensorSource {
+
+    private static final int MAX_DATAGRAM_SIZE = 512;
+
+    private final InetSocketAddress address;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private DatagramChannel channel = null;
+
+    /**
+     * @param port
+     *            int giving the UDP port to listen on on all addresses, 0 for
+     *            any free port.
+     */
+    public UdpSensorSource(int port) {
+        this(new InetSocketAddress(port));
+    }
+
+    /**
+     * @param address
+     *            InetSocketAddress to listen on, e.g. the address of the
+     *            computer on the network of the sensor. Port 0 listens on any
+     *            free port.
+     */
+    public UdpSensorSource(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    /**
+     * Binds the port and receives datagrams on a new thread. If the port
+     * cannot be bound no readings are delivered.
+     */
+    @Override
+    public synchronized void start(Listener listener) {
+        stop();
+
+        try {
+            DatagramChannel run = DatagramChannel.open();
+            run.bind(address);
+            channel = run;
+
+            Thread thread = new Thread(() -> receive(run, listener), "sensor-udp");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Closes the port, ending the receiving thread.
+     */
+    @Override
+    public synchronized void stop() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * @return port the source is listening on, -1 if it is not started.
+     */
+    public synchronized int getPort() {
+        try {
+            return channel == null ? -1 : ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return number of datagrams dropped because they did not hold a
+     *         reading.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void receive(DatagramChannel run, Listener listener) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+        DweetPayloadParser parser = new DweetPayloadParser();
+
+        while (run.isOpen()) {
+            try {
+                buffer.clear();
+                run.receive(buffer);
+                buffer.flip();
+
+                if (parser.parseContent(buffer.array(), 0, buffer.limit())) {
+                    listener.onReading(parser.getWeight(), parser.getTemp());
+                } else {
+                    droppedCount.incrementAndGet();
+                }
+
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
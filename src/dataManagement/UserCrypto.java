@@ -0,0 +1,146 @@
+package dataManagement;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.spec.KeySpec;
+import java.util.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Holds the key material used to protect user identification strings. The AES
+ * key is derived from a fixed password and the salt stored in SALT_FILE when
+ * the object is created; since the derivation is deliberately slow it is done
+ * exactly once and reused for every following operation.
+ *
+ * User strings are stored as a keyed hash (HMAC) so that they never have to be
+ * decrypted. AES decryption is only kept to read user files written in the
+ * old encrypted format.
+ *
+ * @author Aidan
+ *
+ */
+public class UserCrypto {
+
+    // constants for encryption
+    private static final int KEY_DERIVATION_ITERATION = 65536;
+    private static final int KEY_SIZE = 128;
+    private static final char[] PASSWORD = { 'z', 'e', 'r', 'o', 'c', 'l', 'i', 'e', 'n', 't' };
+    private static final byte[] HASH_KEY_LABEL = { 'u', 's', 'e', 'r', '-', 'i', 'n', 'd', 'e', 'x' };
+
+    // a Cipher cannot be shared between threads
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/CBC/PKCS5Padding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    // length in bytes of the hash of a user string
+    public static final int HASH_LENGTH = 32;
+
+    private final SecretKey secretKey;
+    private final Mac mac;
+    private final long derivationTime; // in ms
+
+    /**
+     * Derives the AES key and the user hash key from the given salt.
+     *
+     * @param salt
+     *            byte[] read from SALT_FILE.
+     * @throws GeneralSecurityException
+     *             if the platform does not support the required algorithms.
+     */
+    public UserCrypto(byte[] salt) throws GeneralSecurityException {
+        long start = System.nanoTime();
+
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        KeySpec spec = new PBEKeySpec(PASSWORD, salt, KEY_DERIVATION_ITERATION, KEY_SIZE);
+        SecretKey tmpKey = factory.generateSecret(spec);
+        secretKey = new SecretKeySpec(tmpKey.getEncoded(), "AES");
+
+        // the hash key is derived from the AES key rather than reusing it
+        Mac derive = Mac.getInstance("HmacSHA256");
+        derive.init(new SecretKeySpec(secretKey.getEncoded(), "HmacSHA256"));
+        mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(derive.doFinal(HASH_KEY_LABEL), "HmacSHA256"));
+
+        derivationTime = (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+     * @return time in ms taken to derive the keys of this object.
+     */
+    public long getDerivationTime() {
+        return derivationTime;
+    }
+
+    /**
+     * Computes the keyed hash of the given user string. The same user always
+     * gives the same hash for a given salt.
+     *
+     * @param user
+     *            String to identify the user.
+     * @return String giving the base64 encoded hash of user.
+     */
+    public String hash(String user) {
+        byte[] digest = new byte[HASH_LENGTH];
+        hash(user, digest);
+        return Base64.getEncoder().encodeToString(digest);
+    }
+
+    /**
+     * Computes the keyed hash of the given user string into output, see
+     * hash(String).
+     *
+     * @param user
+     *            String to identify the user.
+     * @param output
+     *            byte[] of at least HASH_LENGTH bytes that receives the hash.
+     */
+    public void hash(String user, byte[] output) {
+        synchronized (mac) {
+            mac.update(user.getBytes(StandardCharsets.UTF_8));
+            try {
+                mac.doFinal(output, 0);
+            } catch (ShortBufferException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+
+    /**
+     * Decrypts the given string using the provided initialization vector.
+     *
+     * @param encrypted
+     *            String to be decrypted. Must not be the empty string.
+     * @param iv
+     *            String giving the initialization vector to be used during the
+     *            decryption process.
+     * @return the decrypted String of encrypted or null if it could not be
+     *         decrypted.
+     */
+    public String decrypt(String encrypted, String iv) {
+        Cipher cipher = CIPHER.get();
+
+        try {
+            byte[] ivBytes = Base64.getDecoder().decode(iv.getBytes("UTF-8"));
+            byte[] encryptedBytes = Base64.getDecoder().decode(encrypted.getBytes("UTF-8"));
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(ivBytes));
+            return new String(cipher.doFinal(encryptedBytes), "UTF-8");
+
+        } catch (UnsupportedEncodingException | GeneralSecurityException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package dataManagement;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Decrypts a range of the user identification strings read from a USER_FILE
+ * written in the old encrypted format. Large
+ * ranges are split in half and decrypted in parallel when run in a
+ * ForkJoinPool. Every worker thread uses its own Cipher, see UserCrypto.
+ *
+ * @author Aidan
+ *
+ */
+class UserDecryptTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    // ranges smaller than this are decrypted by a single thread
+    private static final int SPLIT_THRESHOLD = 512;
+
+    private final String[] encrypted;
+    private final String[] ivs;
+    private final String[] ids;
+    private final UserCrypto crypto;
+    private final int from;
+    private final int to;
+
+    /**
+     * @param encrypted
+     *            String[] of encrypted user ids read from USER_FILE.
+     * @param ivs
+     *            String[] holding the initialization vector of encrypted[i] at
+     *            index i.
+     * @param ids
+     *            String[] of length encrypted.length that receives the
+     *            decrypted id of encrypted[i] at index i, or null if it could
+     *            not be decrypted.
+     * @param crypto
+     *            UserCrypto holding the key used to encrypt the entries.
+     * @param from
+     *            index of the first entry to decrypt (inclusive).
+     * @param to
+     *            index of the last entry to decrypt (exclusive).
+     */
+    UserDecryptTask(String[] encrypted, String[] ivs, String[] ids, UserCrypto crypto, int from, int to) {
+        this.encrypted = encrypted;
+        this.ivs = ivs;
+        this.ids = ids;
+        this.crypto = crypto;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= SPLIT_THRESHOLD) {
+            decryptRange();
+        } else {
+            int middle = (from + to) >>> 1;
+            invokeAll(new UserDecryptTask(encrypted, ivs, ids, crypto, from, middle),
+                    new UserDecryptTask(encrypted, ivs, ids, crypto, middle, to));
+        }
+    }
+
+    /**
+     * Decrypts every id in the range of this task on the calling thread.
+     */
+    void decryptRange() {
+        for (int i = from; i < to; i++) {
+            ids[i] = crypto.decrypt(encrypted[i], ivs[i]);
+        }
+    }
+}
@@ -1,41 +1,36 @@
 package dataManagement;
 
 /**
- * Data type holds information on user admin and vote status as well as their
- * initialization vector used to decrypt user strings from file.
+ * Data type holds information on user admin and vote status. Instead of a
+ * voted flag the user keeps the voting epoch they last voted in, see
+ * DataManager.resetVotes(); 0 if they never voted.
  * 
  * @author Aidan
  *
  */
 public class UserFlags {
 
-    private final String iv;
     private boolean admin;
-    private boolean voted;
+    private int voteEpoch;
 
-    public UserFlags(String iv, boolean admin, boolean voted) {
-        this.iv = iv;
+    public UserFlags(boolean admin, int voteEpoch) {
         this.admin = admin;
-        this.voted = voted;
-    }
-
-    public String getIV() {
-        return iv;
+        this.voteEpoch = voteEpoch;
     }
 
     public void setAdmin(boolean value) {
         admin = value;
     }
 
-    public void setVoted(boolean value) {
-        voted = value;
+    public void setVoteEpoch(int epoch) {
+        voteEpoch = epoch;
     }
 
     public boolean isAdmin() {
         return admin;
     }
 
-    public boolean hasVoted() {
-        return voted;
+    public int getVoteEpoch() {
+        return voteEpoch;
     }
 }
@@ -0,0 +1,165 @@
+package dataManagement;
+
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * Append-only journal of changes made to the user buffer of a DataManager
+ * since USER_FILE was last written in full. Changes are written ahead through
+ * a WriteAheadLog, so each one is on disk within milliseconds without blocking
+ * the caller. Each change is one line of text:
+ *
+ * <pre>
+ * A hash          user added
+ * M hash 0|1      admin flag set
+ * E hash epoch    user voted in epoch, or vote cleared if epoch is 0
+ * N epoch         voting epoch started
+ * </pre>
+ *
+ * Every record sets a value rather than changing it, so replaying the journal
+ * over a USER_FILE that already contains some of its records gives the same
+ * result as replaying it over the USER_FILE it was started from. This class is
+ * not thread safe; DataManager guards it with its own lock.
+ *
+ * @author Aidan
+ *
+ */
+class UserJournal {
+
+    private static final char ADD = 'A';
+    private static final char ADMIN = 'M';
+    private static final char VOTE_EPOCH = 'E';
+    private static final char NEW_EPOCH = 'N';
+
+    private final WriteAheadLog log;
+    private int size = 0; // records since USER_FILE was last written
+
+    /**
+     * @param journalPath
+     *            String giving the full path of the journal file.
+     */
+    UserJournal(String journalPath) {
+        log = new WriteAheadLog(journalPath);
+    }
+
+    void recordAdd(byte[] hash) {
+        append(ADD + " " + encode(hash));
+    }
+
+    void recordAdmin(byte[] hash, boolean value) {
+        append(ADMIN + " " + encode(hash) + (value ? " 1" : " 0"));
+    }
+
+    void recordVoteEpoch(byte[] hash, int epoch) {
+        append(VOTE_EPOCH + " " + encode(hash) + " " + epoch);
+    }
+
+    void recordNewEpoch(int epoch) {
+        append(NEW_EPOCH + " " + epoch);
+    }
+
+    private static String encode(byte[] hash) {
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
+    private void append(String record) {
+        log.append(record);
+        size++;
+    }
+
+    /**
+     * @return number of records in the journal.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Blocks until every record made so far is on disk.
+     */
+    void flush() {
+        try {
+            log.sync();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes every record made so far to disk and closes the journal. No
+     * records may be made afterwards.
+     */
+    void close() {
+        try {
+            log.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sets aside every record made so far. Should be called right before
+     * USER_FILE is rewritten; once it has been written call clear().
+     */
+    void startCompaction() {
+        log.rotate();
+        size = 0;
+    }
+
+    /**
+     * Discards the records set aside by startCompaction(). Should be called
+     * once USER_FILE holds everything in them.
+     */
+    void clear() {
+        log.discardRotated();
+    }
+
+    /**
+     * Applies every record in the journal to userData in the order they were
+     * written. A line that cannot be read, such as one cut short by a crash, is
+     * skipped. Must be called before any new record is made.
+     *
+     * @param userData
+     *            UserStore loaded from USER_FILE.
+     * @return number of records applied.
+     * @throws IOException
+     *             if the journal exists but could not be read.
+     */
+    int replay(UserStore userData) throws IOException {
+        for (String record : log.readRecords()) {
+            if (apply(record, userData)) {
+                size++;
+            }
+        }
+
+        return size;
+    }
+
+    private static boolean apply(String line, UserStore userData) {
+        String[] fields = line.split(" ");
+        char type = fields[0].length() == 1 ? fields[0].charAt(0) : 0;
+
+        try {
+            if (type == NEW_EPOCH && fields.length == 2) {
+                userData.setCurrentEpoch(Integer.parseInt(fields[1]));
+
+            } else if (type == ADD && fields.length == 2) {
+                userData.add(Base64.getDecoder().decode(fields[1]), 0, 0);
+
+            } else if (type == ADMIN && fields.length == 3 && (fields[2].equals("0") || fields[2].equals("1"))) {
+                userData.setFlag(Base64.getDecoder().decode(fields[1]), UserStore.ADMIN, fields[2].equals("1"));
+
+            } else if (type == VOTE_EPOCH && fields.length == 3) {
+                userData.setVoteEpoch(Base64.getDecoder().decode(fields[1]), Integer.parseInt(fields[2]));
+
+            } else {
+                return false;
+            }
+
+        } catch (IllegalArgumentException e) {
+            return false; // not a valid hash or epoch, e.g. cut short by a crash
+        }
+
+        return true;
+    }
+}
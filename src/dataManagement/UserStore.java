@@ -0,0 +1,98 @@
+package dataManagement;
+
+import java.io.IOException;
+
+/**
+ * Holds the admin flag and the voting epoch last voted in of every user, keyed
+ * by the raw bytes of the user's hash, see UserCrypto.hash(), together with
+ * the current voting epoch. A user has voted if they last voted in the current
+ * epoch, so starting a new epoch resets every vote at once while keeping the
+ * epoch each user last voted in. Lookups and updates do not keep a reference
+ * to the hash passed in, so callers may reuse the same array. Implementations
+ * are not thread safe; DataManager guards its store with its own lock.
+ *
+ * @author Aidan
+ *
+ */
+interface UserStore {
+
+    int ADMIN = 1;
+
+    // epoch of a new store; 0 means a user never voted
+    int FIRST_EPOCH = 1;
+
+    /**
+     * @return flags of the user with the given hash or -1 if there is none.
+     */
+    int getFlags(byte[] hash);
+
+    /**
+     * Adds a user with the given flags and voting epoch if there is no user
+     * with the given hash yet.
+     *
+     * @return true if the user was added.
+     */
+    boolean add(byte[] hash, int flags, int voteEpoch);
+
+    /**
+     * Sets or clears flag of the user with the given hash, adding the user
+     * with no other flags if there is none yet.
+     */
+    void setFlag(byte[] hash, int flag, boolean value);
+
+    /**
+     * @return epoch the user with the given hash last voted in, or 0 if the
+     *         user never voted or does not exist.
+     */
+    int getVoteEpoch(byte[] hash);
+
+    /**
+     * Sets the epoch the user with the given hash last voted in, adding the
+     * user with no flags if there is none yet.
+     */
+    void setVoteEpoch(byte[] hash, int epoch);
+
+    /**
+     * @return the current voting epoch.
+     */
+    int getCurrentEpoch();
+
+    void setCurrentEpoch(int epoch);
+
+    /**
+     * @return number of users.
+     */
+    int size();
+
+    /**
+     * Removes every user and sets the current epoch back to FIRST_EPOCH.
+     */
+    void clear();
+
+    /**
+     * Calls visitor once for every user, in no particular order.
+     */
+    void forEach(Visitor visitor) throws IOException;
+
+    /**
+     * Makes sure every change made so far is on disk. Does nothing for a store
+     * that is only held in memory.
+     */
+    void sync() throws IOException;
+
+    /**
+     * Receives the users of a UserStore, see forEach().
+     */
+    interface Visitor {
+        /**
+         * @param hash
+         *            byte[] holding the hash of the user. Is only valid
+         *            during this call.
+         * @param flags
+         *            int holding the flags of the user.
+         * @param voteEpoch
+         *            int giving the epoch the user last voted in.
+         */
+        void visit(byte[] hash, int flags, int voteEpoch) throws IOException;
+    }
+}
@@ -0,0 +1,172 @@
+package dataManagement;
+
+/**
+ * Filters the noisy readings of the scale in two stages. A median over the
+ * last readings rejects single spikes, e.g. from someone leaning on the
+ * fridge, and a Kalman filter of the keg level then smooths what is left.
+ * The Kalman filter treats the level as constant up to some process noise per
+ * reading, so it settles on the true level while the keg is left alone but
+ * follows a pour within a few readings.
+ * <p>
+ * The residuals of the readings against the filtered level are tracked so the
+ * noise of the scale can be checked against the configured measurement noise.
+ * Filtering a reading allocates nothing.
+ *
+ * @author Aidan
+ *
+ */
+public class WeightFilter {
+
+    private final double[] window; // last readings in arrival order
+    private final double[] sorted; // same readings in ascending order
+    private final double processNoise;
+    private final double measurementNoise;
+    private int size = 0;
+    private int next = 0;
+
+    private double estimate;
+    private double variance;
+
+    // residual statistics, see Welford's algorithm
+    private long residualCount = 0;
+    private double residualMean = 0;
+    private double residualM2 = 0;
+    private double maxResidual = 0;
+
+    /**
+     * @param medianWindow
+     *            int giving the number of readings the median is taken over,
+     *            1 to disable spike rejection.
+     * @param processNoise
+     *            double giving the variance by which the level may change
+     *            between two readings.
+     * @param measurementNoise
+     *            double giving the variance of the noise of a reading, 0 to
+     *            disable smoothing.
+     */
+    public WeightFilter(int medianWindow, double processNoise, double measurementNoise) {
+        if (medianWindow < 1) {
+            throw new IllegalArgumentException("Median window must be positive");
+        }
+        window = new double[medianWindow];
+        sorted = new double[medianWindow];
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+    }
+
+    /**
+     * @param weight
+     *            double giving the latest reading of the scale.
+     * @return filtered level of the keg.
+     */
+    public synchronized double filter(double weight) {
+        double median = addToWindow(weight);
+
+        if (residualCount == 0) {
+            estimate = median;
+            variance = measurementNoise;
+        } else {
+            variance += processNoise;
+            double gain = variance + measurementNoise > 0 ? variance / (variance + measurementNoise) : 1;
+            estimate += gain * (median - estimate);
+            variance *= 1 - gain;
+        }
+
+        double residual = weight - estimate;
+        residualCount++;
+        double delta = residual - residualMean;
+        residualMean += delta / residualCount;
+        residualM2 += delta * (residual - residualMean);
+        maxResidual = Math.max(maxResidual, Math.abs(residual));
+
+        return estimate;
+    }
+
+    /**
+     * Forgets all readings and residual statistics.
+     */
+    public synchronized void reset() {
+        size = 0;
+        next = 0;
+        residualCount = 0;
+        residualMean = 0;
+        residualM2 = 0;
+        maxResidual = 0;
+    }
+
+    public int getMedianWindow() {
+        return window.length;
+    }
+
+    public double getProcessNoise() {
+        return processNoise;
+    }
+
+    public double getMeasurementNoise() {
+        return measurementNoise;
+    }
+
+    /**
+     * @return number of readings filtered.
+     */
+    public synchronized long getResidualCount() {
+        return residualCount;
+    }
+
+    /**
+     * @return mean difference between the readings and the filtered level.
+     */
+    public synchronized double getResidualMean() {
+        return residualMean;
+    }
+
+    /**
+     * @return standard deviation of the difference between the readings and
+     *         the filtered level.
+     */
+    public synchronized double getResidualStdDev() {
+        return residualCount > 1 ? Math.sqrt(residualM2 / (residualCount - 1)) : 0;
+    }
+
+    /**
+     * @return largest difference between a reading and the filtered level.
+     */
+    public synchronized double getMaxResidual() {
+        return maxResidual;
+    }
+
+    /**
+     * Replaces the oldest reading of the window with weight, keeping sorted in
+     * order.
+     *
+     * @return median of the window.
+     */
+    private double addToWindow(double weight) {
+        int index;
+        if (size < window.length) {
+            index = size++;
+        } else {
+            // remove the oldest reading from sorted
+            double oldest = window[next];
+            int i = 0;
+            while (sorted[i] != oldest) {
+                i++;
+            }
+            System.arraycopy(sorted, i + 1, sorted, i, size - 1 - i);
+            index = size - 1;
+        }
+
+        // insert weight into sorted
+        int i = index;
+        while (i > 0 && sorted[i - 1] > weight) {
+            sorted[i] = sorted[i - 1];
+            i--;
+        }
+        sorted[i] = weight;
+
+        window[next] = weight;
+        next = (next + 1) % window.length;
+
+        return size % 2 == 1 ? sorted[size / 2] : (sorted[size / 2 - 1] + sorted[size / 2]) / 2;
+    }
+}
@@ -0,0 +1,352 @@
+package dataManagement;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Append-only log of text records that are written to disk by a background
+ * thread. Appending a record never blocks the caller. The writer thread takes
+ * every record queued since its last write, writes them in one go and then
+ * forces them to disk with a single fsync (group commit), so a record reaches
+ * the disk within one fsync of being appended no matter how many records are
+ * appended at once.
+ *
+ * The log is meant to be replayed over a snapshot file. When the snapshot is
+ * about to be rewritten the log is rotated: records appended before the call
+ * to rotate() are moved to a second file which is discarded once the new
+ * snapshot has been written. Both files are read on replay.
+ *
+ * close() writes what is still queued, stops the writer thread and closes the
+ * log file; it should be called once the log is no longer needed.
+ *
+ * @author Aidan
+ *
+ */
+public class WriteAheadLog {
+
+    private static final int RECORD = 0;
+    private static final int ROTATE = 1;
+    private static final int DISCARD_ROTATED = 2;
+    private static final int SYNC = 3;
+    private static final int CLOSE = 4;
+
+    private final String logPath;
+    private final String rotatedPath;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<Entry>();
+    private final Thread writer;
+    private FileChannel channel;
+    private volatile boolean closed = false;
+
+    // statistics, only written by the writer thread
+    private volatile long recordCount = 0;
+    private volatile long commitCount = 0;
+
+    /**
+     * Opens the log at logPath and starts its writer thread. Records already
+     * in the file are kept. If the file cannot be opened now the writer thread
+     * tries again on every commit.
+     *
+     * @param logPath
+     *            String giving the full path of the log file.
+     */
+    public WriteAheadLog(String logPath) {
+        this.logPath = logPath;
+        this.rotatedPath = logPath + ".old";
+
+        try {
+            openChannel();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        writer = new Thread(this::writeLoop, "wal-" + new File(logPath).getName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues record to be written to the log. Returns immediately. Records
+     * appended after close() are not written.
+     *
+     * @param record
+     *            String to append. Must not contain a line break.
+     */
+    public void append(String record) {
+        if (closed) {
+            return;
+        }
+        queue.add(new Entry(RECORD, record, null));
+    }
+
+    /**
+     * Moves every record appended before this call out of the log and into the
+     * rotated file. Should be called right before a snapshot holding those
+     * records is written.
+     */
+    public void rotate() {
+        queue.add(new Entry(ROTATE, null, null));
+    }
+
+    /**
+     * Deletes the rotated file. Should be called once a snapshot written after
+     * the last call to rotate() is safely on disk.
+     */
+    public void discardRotated() {
+        queue.add(new Entry(DISCARD_ROTATED, null, null));
+    }
+
+    /**
+     * Blocks until every record appended before this call is on disk.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting.
+     */
+    public void sync() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        synchronized (this) {
+            if (closed) {
+                return; // everything was written by close()
+            }
+            queue.add(new Entry(SYNC, null, done));
+        }
+        done.await();
+    }
+
+    /**
+     * Writes every record appended before this call to disk, then stops the
+     * writer thread and closes the log file. Blocks until done; calling it
+     * again has no effect.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting.
+     */
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            if (!closed) {
+                closed = true;
+                queue.add(new Entry(CLOSE, null, null));
+            }
+        }
+        writer.join();
+    }
+
+    /**
+     * @return number of records written to disk so far.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return number of fsyncs done so far. Every fsync commits all records
+     *         queued since the previous one.
+     */
+    public long getCommitCount() {
+        return commitCount;
+    }
+
+    /**
+     * Reads every record in the rotated file followed by every record in the
+     * log, in the order they were appended. Should only be called before any
+     * record is appended.
+     *
+     * @return List<String> of records.
+     * @throws IOException
+     *             if an existing file could not be read.
+     */
+    public List<String> readRecords() throws IOException {
+        List<String> records = new ArrayList<String>();
+        readFile(rotatedPath, records);
+        readFile(logPath, records);
+        return records;
+    }
+
+    private static void readFile(String path, List<String> records) throws IOException {
+        File file = new File(path);
+        if (!file.exists()) {
+            return;
+        }
+
+        // records are written as UTF-8 whatever the platform charset
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        String line = reader.readLine();
+
+        while (line != null) {
+            if (!line.isEmpty()) {
+                records.add(line);
+            }
+            line = reader.readLine();
+        }
+
+        reader.close();
+    }
+
+    /**
+     * Opens the log file for appending. A last record cut short by a crash is
+     * terminated so that it cannot merge with the next record.
+     */
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(Paths.get(logPath), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+
+        long size = channel.size();
+        if (size > 0) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            FileChannel reader = FileChannel.open(Paths.get(logPath), StandardOpenOption.READ);
+            reader.read(last, size - 1);
+            reader.close();
+
+            if (last.get(0) != '\n') {
+                channel.write(ByteBuffer.wrap(new byte[] { '\n' }));
+            }
+        }
+    }
+
+    /**
+     * Body of the writer thread. Waits for at least one entry, then handles
+     * every entry queued so far with at most one fsync per run of records.
+     * Returns once the log is closed.
+     */
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<Entry>();
+        StringBuilder pending = new StringBuilder();
+        boolean closing = false;
+
+        while (!closing) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+
+            int pendingRecords = 0;
+            for (Entry entry : batch) {
+                try {
+                    if (entry.type == RECORD) {
+                        pending.append(entry.record).append('\n');
+                        pendingRecords++;
+                        continue;
+                    }
+
+                    // every other entry acts on the records queued before it
+                    int records = pendingRecords;
+                    pendingRecords = 0;
+                    closing = entry.type == CLOSE;
+                    commit(pending, records);
+
+                    if (entry.type == ROTATE) {
+                        rotateFile();
+                    } else if (entry.type == DISCARD_ROTATED) {
+                        Files.deleteIfExists(Paths.get(rotatedPath));
+                    } else if (entry.type == SYNC) {
+                        entry.done.countDown();
+                    }
+
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    if (entry.done != null) {
+                        entry.done.countDown();
+                    }
+                }
+
+                if (closing) {
+                    break; // anything queued after CLOSE is dropped
+                }
+            }
+
+            try {
+                commit(pending, pendingRecords);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+
+            pending.setLength(0);
+            batch.clear();
+        }
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            channel = null;
+        }
+    }
+
+    private void commit(StringBuilder pending, int records) throws IOException {
+        if (records == 0) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toString().getBytes(StandardCharsets.UTF_8));
+        pending.setLength(0);
+
+        if (channel == null) {
+            openChannel();
+        }
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+
+        recordCount += records;
+        commitCount++;
+    }
+
+    /**
+     * Moves the contents of the log file to the rotated file, appending to it
+     * if an earlier rotated file was never discarded, and starts an empty log.
+     */
+    private void rotateFile() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+
+        if (new File(rotatedPath).exists()) {
+            FileChannel rotated = FileChannel.open(Paths.get(rotatedPath), StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            rotated.write(ByteBuffer.wrap(Files.readAllBytes(Paths.get(logPath))));
+            rotated.force(false);
+            rotated.close();
+            Files.delete(Paths.get(logPath));
+        } else {
+            Files.move(Paths.get(logPath), Paths.get(rotatedPath));
+        }
+
+        openChannel();
+    }
+
+    /**
+     * An entry in the queue of the writer thread.
+     */
+    private static class Entry {
+        final int type;
+        final String record;
+        final CountDownLatch done;
+
+        Entry(int type, String record, CountDownLatch done) {
+            this.type = type;
+            this.record = record;
+            this.done = done;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package gui;
+
+import java.util.function.IntConsumer;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * Bar chart drawn on a canvas. Bars are laid out side by side in the
+ * middle of the chart and centred vertically; one of them may be
+ * highlighted. Changing the height of a bar or the highlighted bar only
+ * repaints the bars concerned, adding or removing a bar repaints all of
+ * them since the others move.
+ *
+ * @author Richard
+ */
+public class BarChartCanvas extends CanvasChart {
+
+    private final double barWidth, spacing;
+    private final Color barColor, selectedColor;
+    private final double[] heights;
+    private final boolean[] dirty;
+
+    private int count = 0;
+    private int selected = -1;
+    private IntConsumer onBarClicked;
+
+    /**
+     * @param maxBars, maximum number of bars in the chart
+     * @param barWidth, width of every bar
+     * @param spacing, space between two bars
+     * @param maxBarHeight, height of the chart
+     * @param barColor, colour of the bars
+     * @param selectedColor, colour of the highlighted bar
+     */
+    public BarChartCanvas(int maxBars, double barWidth, double spacing, double maxBarHeight,
+                          Color barColor, Color selectedColor) {
+        super(maxBars * (barWidth + spacing) - spacing, maxBarHeight);
+        this.barWidth = barWidth;
+        this.spacing = spacing;
+        this.barColor = barColor;
+        this.selectedColor = selectedColor;
+        heights = new double[maxBars];
+        dirty = new boolean[maxBars];
+
+        setOnMouseClicked(event -> {
+            int bar = barAt(event.getX());
+            if (bar >= 0 && onBarClicked != null) {
+                onBarClicked.accept(bar);
+            }
+        });
+    }
+
+    /**
+     * @return number of bars in the chart
+     */
+    public int getBarCount() {
+        return count;
+    }
+
+    /**
+     * Adds a bar after the last one.
+     *
+     * @param height, height of the new bar
+     */
+    public void addBar(double height) {
+        heights[count++] = height;
+        requestFullRedraw();
+    }
+
+    /**
+     * Removes a bar, moving the following bars one place to the left.
+     *
+     * @param index, index of the bar to remove
+     */
+    public void removeBar(int index) {
+        System.arraycopy(heights, index + 1, heights, index, count - index - 1);
+        count--;
+        if (selected >= count) {
+            selected = -1;
+        }
+        requestFullRedraw();
+    }
+
+    /**
+     * @param index, index of the bar to change
+     * @param height, new height of the bar
+     */
+    public void setBarHeight(int index, double height) {
+        if (heights[index] != height) {
+            heights[index] = height;
+            markDirty(index);
+        }
+    }
+
+    /**
+     * Highlights a bar instead of the one highlighted before.
+     *
+     * @param index, index of the bar to highlight, -1 for none
+     */
+    public void setSelected(int index) {
+        if (selected != index) {
+            markDirty(selected);
+            selected = index;
+            markDirty(index);
+        }
+    }
+
+    /**
+     * @param handler, called with the index of a bar when it is clicked
+     */
+    public void setOnBarClicked(IntConsumer handler) {
+        onBarClicked = handler;
+    }
+
+    @Override
+    protected void paint(GraphicsContext gc, double width, double height, boolean full) {
+        double left = left(width);
+
+        for (int i = 0; i < count; i++) {
+            if (!full && !dirty[i]) {
+                continue;
+            }
+            dirty[i] = false;
+
+            double x = left + i * (barWidth + spacing);
+            if (!full) {
+                gc.clearRect(x, 0, barWidth, height);
+            }
+            gc.setFill(i == selected ? selectedColor : barColor);
+            gc.fillRect(x, (height - heights[i]) / 2, barWidth, heights[i]);
+        }
+    }
+
+    private void markDirty(int index) {
+        if (index >= 0 && index < count) {
+            dirty[index] = true;
+            requestRedraw();
+        }
+    }
+
+    /**
+     * @return x coordinate of the left edge of the first bar
+     */
+    private double left(double width) {
+        return (width - (count * (barWidth + spacing) - spacing)) / 2;
+    }
+
+    /**
+     * @return index of the bar at x, -1 if there is none
+     */
+    private int barAt(double x) {
+        double offset = x - left(getWidth());
+        int index = (int) Math.floor(offset / (barWidth + spacing));
+        boolean onBar = offset - index * (barWidth + spacing) <= barWidth;
+        return offset >= 0 && index < count && onBar ? index : -1;
+    }
+}
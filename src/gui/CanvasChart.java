@@ -0,0 +1,116 @@
+package gui;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+
+/**
+ * Base of charts drawn on a single Canvas instead of a scene graph node per
+ * data point. The canvas fills the pane holding it. Changes request a redraw,
+ * and all changes made until the JavaFX thread is free again are drawn by one
+ * redraw. Subclasses only repaint the regions they marked dirty unless the
+ * whole chart has to be repainted, e.g. after a resize.
+ * <p>
+ * The time spent drawing every frame is counted so the cost of the charts can
+ * be watched on the kiosk.
+ *
+ * @author Richard
+ */
+public abstract class CanvasChart extends Pane {
+
+    private final Canvas canvas = new Canvas();
+
+    private boolean redrawPending = false;
+    private boolean fullRedraw = true;
+
+    // frame time statistics
+    private long frameCount = 0;
+    private long totalFrameTime = 0; // in ns
+    private long maxFrameTime = 0; // in ns
+
+    /**
+     * @param prefWidth, preferred width of the chart
+     * @param prefHeight, preferred height of the chart
+     */
+    protected CanvasChart(double prefWidth, double prefHeight) {
+        setPrefSize(prefWidth, prefHeight);
+        setMinSize(0, 0);
+        getChildren().add(canvas);
+
+        canvas.widthProperty().bind(widthProperty());
+        canvas.heightProperty().bind(heightProperty());
+        canvas.widthProperty().addListener(observable -> requestFullRedraw());
+        canvas.heightProperty().addListener(observable -> requestFullRedraw());
+    }
+
+    /**
+     * Requests the dirty regions of the chart to be repainted once the
+     * JavaFX thread is free.
+     */
+    protected void requestRedraw() {
+        if (!redrawPending) {
+            redrawPending = true;
+            Platform.runLater(this::redraw);
+        }
+    }
+
+    /**
+     * Requests the whole chart to be repainted once the JavaFX thread
+     * is free.
+     */
+    protected void requestFullRedraw() {
+        fullRedraw = true;
+        requestRedraw();
+    }
+
+    /**
+     * Paints the chart.
+     *
+     * @param gc, GraphicsContext of the canvas
+     * @param width, width of the canvas
+     * @param height, height of the canvas
+     * @param full, true if the whole canvas was cleared and must be
+     *          painted, false if only the dirty regions must be
+     */
+    protected abstract void paint(GraphicsContext gc, double width, double height, boolean full);
+
+    private void redraw() {
+        long start = System.nanoTime();
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        boolean full = fullRedraw;
+
+        redrawPending = false;
+        fullRedraw = false;
+        if (full) {
+            gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        }
+        paint(gc, canvas.getWidth(), canvas.getHeight(), full);
+
+        long frameTime = System.nanoTime() - start;
+        frameCount++;
+        totalFrameTime += frameTime;
+        maxFrameTime = Math.max(maxFrameTime, frameTime);
+    }
+
+    /**
+     * @return number of frames drawn
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return average time in ms spent drawing a frame
+     */
+    public double getAverageFrameTime() {
+        return frameCount == 0 ? 0 : totalFrameTime / 1e6 / frameCount;
+    }
+
+    /**
+     * @return longest time in ms spent drawing a frame
+     */
+    public double getMaxFrameTime() {
+        return maxFrameTime / 1e6;
+    }
+}
@@ -85,12 +85,16 @@ public class DisplayManager {
 
         Node kegMeter = elements.get(0);
         Node kegVolume = elements.get(1);
+        Node kegForecast = elements.get(2);
 
         kegMeter.getStyleClass().add("keg-meter");
         kegVolume.getStyleClass().add("data-labels");
+        kegForecast.getStyleClass().add("forecast-label");
         kegFrame.getStyleClass().addAll("all-frames", "keg-frame");
 
-        StackPane kegMeterStack = new StackPane(kegMeter,kegVolume);
+        StackPane kegMeterStack = new StackPane(kegMeter,kegVolume,kegForecast);
+        StackPane.setAlignment(kegForecast, Pos.TOP_LEFT);
+        StackPane.setMargin(kegForecast, new Insets(20, 0, 0, 60));
         StackPane.setAlignment(kegVolume, Pos.BOTTOM_LEFT);
         StackPane.setMargin(kegVolume, new Insets(0, 0, 20, 60));
         StackPane.setAlignment(kegMeter, Pos.BOTTOM_LEFT);
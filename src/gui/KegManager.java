@@ -5,9 +5,6 @@ import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.event.ActionEvent;
 import javafx.scene.Parent;
-import javafx.scene.chart.LineChart;
-import javafx.scene.chart.NumberAxis;
-import javafx.scene.chart.XYChart;
 import javafx.scene.control.Label;
 import javafx.scene.paint.Paint;
 import javafx.scene.shape.Polygon;
@@ -26,8 +23,11 @@ import static java.lang.Math.round;
  * @author Richard
  */
 public class KegManager {
-    private static final int MIN_DATA_POINTS        = 10;
-    private static final int MAX_DATA_POINTS        = 2000;
+    private static final int CHART_SPAN             = 60; // time in minutes
+    private static final int CHART_POINTS           = 200; // points drawn at most
+    private static final int HISTORY_POINTS         = 4096; // readings charted at most
+    private static final int CHART_WIDTH            = 560;
+    private static final int CHART_HEIGHT           = 210;
     private static final int Y_MIN                  = 270;
     private static final int Y_MAX                  = 285;
     private static final double METER_HEIGHT        = 232.0;
@@ -36,18 +36,26 @@ public class KegManager {
     private final Label tempLabel = new Label("273\u00B0K");
     private final Label weightLabel = new Label("30L");
     private final Label adjustTare = new Label("30L");
+    private final Label forecastLabel = new Label();
     private final Polygon weightMeter = new Polygon();
-    private final XYChart.Series<Number, Number> tempData = new XYChart.Series<>();
-    private final NumberAxis xAxis = new NumberAxis(0, MIN_DATA_POINTS + 1, 1);
+    private final LineChartCanvas tempChart = new LineChartCanvas(CHART_WIDTH, CHART_HEIGHT, CHART_POINTS,
+            Y_MIN - 1, Y_MAX + 1);
     private final DweetManager beerKeg;
+    private final TempChartSampler chartSampler = new TempChartSampler(HISTORY_POINTS, CHART_POINTS);
 
     private double taredValue;
     private int maxKegWeight = 30;
-    private double sequence = 0;
     private boolean displayKelvin = false;
 
     public KegManager(DweetManager dweetManager) {
         beerKeg = dweetManager;
+        beerKeg.fridgeWarmingProperty().addListener((observable, oldValue, warming) -> {
+            if (warming) {
+                tempLabel.getStyleClass().add("temp-warning");
+            } else {
+                tempLabel.getStyleClass().remove("temp-warning");
+            }
+        });
 
         Timeline animation;
         animation = new Timeline();
@@ -115,13 +123,14 @@ public class KegManager {
     public void setMaxKegWeight(int maxKegWeight) { this.maxKegWeight = maxKegWeight; }
 
     /**
-     * This is used in the case a new keg is tapped. This will get the current weight from
+     * This is used in the case a new keg is tapped. This will get the latest raw weight from
      * the sensor and adjust the tare value such that the observed weight is the max weight
      */
     public void tareToMaxWeight() {
         List <Double> updatedCoord;
-        int weightFromSensor = beerKeg.weightProperty().intValue();
-        taredValue = beerKeg.weightProperty().intValue();
+        // the filtered weight would still be converging from the old keg
+        int weightFromSensor = (int) beerKeg.tapNewKeg();
+        taredValue = weightFromSensor;
 
         // Update GUI
         weightLabel.setText(returnTaredWeight(weightFromSensor) + "L");
@@ -133,25 +142,13 @@ public class KegManager {
     }
 
     /**
-     * Creates line chart for visualizing temperature
+     * Creates line chart for visualizing temperature over the
+     * last CHART_SPAN minutes
      *
      * @return chart object
      */
     public Parent createLineChart() {
-        LineChart<Number, Number> chart;
-        final NumberAxis yAxis = new NumberAxis(Y_MIN - 1, Y_MAX + 1, 0.1);
-
-        // setup chart
-        chart = new LineChart<>(xAxis, yAxis);
-        chart.setAnimated(false);
-        chart.setLegendVisible(false);
-        xAxis.setForceZeroInRange(false);
-
-        // create some starting data
-        tempData.getData().add(new XYChart.Data<Number, Number>(++sequence, 280));
-        chart.getData().add(tempData);
-
-        return chart;
+        return tempChart;
     }
 
     /**
@@ -176,6 +173,16 @@ public class KegManager {
         return weightLabel;
     }
 
+    /**
+     * Create label used to display the time left until the keg
+     * is empty at the current pour rate
+     *
+     * @return Label for the forecast
+     */
+    public Label createForecastLabel() {
+        return forecastLabel;
+    }
+
     /**
      * Create label used to display weight/volume for taring
      *
@@ -253,7 +260,7 @@ public class KegManager {
         List <Double> updatedCoord;
         double weightFromSensor = beerKeg.weightProperty().doubleValue();
 
-        tempData.getData().add(new XYChart.Data<Number, Number>(++sequence, beerKeg.tempProperty().doubleValue()));
+        updateTempChart();
         weightLabel.setText(returnTaredWeight(weightFromSensor) + "L");
         adjustTare.setText(returnTaredWeight(weightFromSensor) + "L");
 
@@ -272,18 +279,40 @@ public class KegManager {
             weightMeter.getPoints().set(i,updatedCoord.get(i));
         }
 
-        // delete old data
-        if (sequence > MAX_DATA_POINTS) {
-            tempData.getData().remove(0);
-        }
+        updateForecast();
+    }
 
-        // move x axis
-        if (sequence > MAX_DATA_POINTS - 1) {
-            xAxis.setLowerBound(xAxis.getLowerBound() + 1);
-            xAxis.setUpperBound(xAxis.getUpperBound() + 1);
-        }
-        else if (sequence > MIN_DATA_POINTS - 1) {
-            xAxis.setUpperBound(xAxis.getUpperBound() + 1);
+    /**
+     * Shows how long the keg lasts at the current pour rate,
+     * nothing if no beer is being poured
+     */
+    private void updateForecast() {
+        // sensor weight at which the tared weight reaches 0
+        double emptyWeight = taredValue - maxKegWeight;
+        double hours = beerKeg.getConsumptionEstimator().getTimeToEmpty(emptyWeight);
+
+        if (Double.isInfinite(hours)) {
+            forecastLabel.setText("");
+        } else if (hours < 48) {
+            long minutes = round(hours * 60);
+            forecastLabel.setText(String.format("Empty in %dh %02dm (%.1fL/h)", minutes / 60, minutes % 60,
+                    beerKeg.pourRateProperty().get()));
+        } else {
+            forecastLabel.setText(String.format("Empty in %d days (%.1fL/h)", round(hours / 24),
+                    beerKeg.pourRateProperty().get()));
         }
     }
+
+    /**
+     * Redraws the temperature chart from the last CHART_SPAN minutes
+     * of readings, reduced to at most CHART_POINTS points, see
+     * TempChartSampler
+     */
+    private void updateTempChart() {
+        long now = System.currentTimeMillis();
+        long from = now - CHART_SPAN * 60000L;
+        int points = chartSampler.sample(beerKeg.getTempHistory(), beerKeg.getRollups(), from, Long.MAX_VALUE);
+
+        tempChart.setPoints(chartSampler.getTimes(), chartSampler.getTemps(), points, from, now);
+    }
 }
@@ -0,0 +1,97 @@
+package gui;
+
+import java.util.Arrays;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineJoin;
+
+/**
+ * Line chart drawn on a canvas from primitive arrays. The line spans the
+ * whole chart, so any change of its points repaints all of it; setting the
+ * same points again does not repaint anything.
+ *
+ * @author Richard
+ */
+public class LineChartCanvas extends CanvasChart {
+
+    private static final Color LINE_COLOR   = Color.web("06D3CE");
+    private static final double LINE_WIDTH  = 2;
+
+    private final double yMin, yMax;
+    private final long[] xValues;
+    private final double[] yValues;
+    private int count = 0;
+    private long xMin = 0, xMax = 1;
+
+    /**
+     * @param prefWidth, preferred width of the chart
+     * @param prefHeight, preferred height of the chart
+     * @param capacity, maximum number of points in the chart
+     * @param yMin, value drawn at the bottom of the chart
+     * @param yMax, value drawn at the top of the chart
+     */
+    public LineChartCanvas(double prefWidth, double prefHeight, int capacity, double yMin, double yMax) {
+        super(prefWidth, prefHeight);
+        this.yMin = yMin;
+        this.yMax = yMax;
+        xValues = new long[capacity];
+        yValues = new double[capacity];
+    }
+
+    /**
+     * Sets the points of the line, copying them from the arrays given.
+     *
+     * @param x, x values of the points in increasing order
+     * @param y, y values of the points
+     * @param count, number of points, at most the capacity of the chart
+     * @param xMin, x value drawn at the left of the chart
+     * @param xMax, x value drawn at the right of the chart
+     */
+    public void setPoints(long[] x, double[] y, int count, long xMin, long xMax) {
+        count = Math.min(count, xValues.length);
+        if (count == this.count && xMin == this.xMin && xMax == this.xMax
+                && Arrays.equals(x, 0, count, xValues, 0, count)
+                && Arrays.equals(y, 0, count, yValues, 0, count)) {
+            return;
+        }
+
+        System.arraycopy(x, 0, xValues, 0, count);
+        System.arraycopy(y, 0, yValues, 0, count);
+        this.count = count;
+        this.xMin = xMin;
+        this.xMax = Math.max(xMax, xMin + 1);
+        requestFullRedraw();
+    }
+
+    @Override
+    protected void paint(GraphicsContext gc, double width, double height, boolean full) {
+        if (count == 0) {
+            return;
+        }
+
+        // keep the line inside the canvas
+        double inset = LINE_WIDTH / 2;
+        double xScale = (width - LINE_WIDTH) / (xMax - xMin);
+        double yScale = (height - LINE_WIDTH) / (yMax - yMin);
+
+        gc.setStroke(LINE_COLOR);
+        gc.setLineWidth(LINE_WIDTH);
+        gc.setLineJoin(StrokeLineJoin.ROUND);
+        gc.beginPath();
+        for (int i = 0; i < count; i++) {
+            double x = inset + (xValues[i] - xMin) * xScale;
+            double y = height - inset - (clamp(yValues[i]) - yMin) * yScale;
+            if (i == 0) {
+                gc.moveTo(x, y);
+            } else {
+                gc.lineTo(x, y);
+            }
+        }
+        gc.stroke();
+    }
+
+    private double clamp(double y) {
+        return Math.max(yMin, Math.min(yMax, y));
+    }
+}
@@ -1,6 +1,5 @@
 package gui;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Timer;
@@ -11,10 +10,10 @@ import javafx.stage.StageStyle;
 import userInputs.KeyCardListener;
 import userInputs.VirtualKeyboard;
 
-import org.json.JSONException;
-
 import dataManagement.DweetManager;
 import dataManagement.DataManager;
+import dataManagement.PourLog;
+import dataManagement.SensorRollups;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.event.EventHandler;
@@ -38,6 +37,9 @@ public class Main extends Application {
     private final VoteManager voteManager = new VoteManager(dataManager);
     private final DisplayManager displayManager = new DisplayManager();
     private final KeyCardListener keyCardListener = new KeyCardListener(dataManager);
+    private final SensorRollups sensorRollups = new SensorRollups(
+            dataManager.getDataDirectory() + "rollups" + System.getProperty("file.separator"));
+    private final PourLog pourLog = new PourLog(dataManager.getDataDirectory() + "pours.log");
 
     private static final long WRITE_DATA_PERIOD = 600000; // in ms
 
@@ -63,38 +65,51 @@ public class Main extends Application {
         window.setTitle("Beer Keg Monitor");
         window.isFullScreen();
 
+        // keep aggregates of the sensor readings on disk
+        dweetManager.setRollups(sensorRollups);
+        dweetManager.setPourLog(pourLog);
+        voteManager.currentKegProperty().addListener((obs, oldKeg, newKeg) -> dweetManager.setKegName(newKeg));
+
         // setup timer task to write beer/user data to file periodically
         Timer saveTimer = new Timer();
         TimerTask save = new TimerTask() {
 
             @Override
             public void run() {
-                voteManager.saveBeerData();
-                try {
-                    dataManager.writeCurrentKeg(voteManager.getCurrentKeg(), kegManager.getTare());
-                    dataManager.writeUsersToFile();
-                } catch (JSONException | IOException e) {
-                    e.printStackTrace();
-                }
+                // votes are counted on the JavaFX thread, copy them there
+                Platform.runLater(() -> saveData());
             }
         };
 
         saveTimer.schedule(save, WRITE_DATA_PERIOD, WRITE_DATA_PERIOD);
 
         primaryStage.setOnCloseRequest(event -> {
-            try {
-                voteManager.saveBeerData();
-                dataManager.writeUsersToFile();
-                dataManager.writeCurrentKeg(voteManager.getCurrentKeg(), kegManager.getTare());
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            saveData();
+            dataManager.close();
+
+            // stop the readings before closing what they are written to
+            dweetManager.stop();
+            dweetManager.setRollups(null);
+            dweetManager.setPourLog(null);
+            sensorRollups.flush();
+            sensorRollups.close();
+            pourLog.close();
 
             Platform.exit();
             System.exit(0);
         });
     }
 
+    /**
+     * Queues beer, user and current keg data to be saved to file on a
+     * background thread. Must be called on the JavaFX thread.
+     */
+    private void saveData() {
+        voteManager.saveBeerData();
+        dataManager.saveUsers();
+        dataManager.saveCurrentKeg(voteManager.getCurrentKeg(), kegManager.getTare());
+    }
+
     private void createScene() {
         createKegFrame();
         createTempAndVotingFrame();
@@ -106,7 +121,6 @@ public class Main extends Application {
         displayManager.getRoot().setOnKeyPressed((KeyEvent event) -> keyCardListener.handleEvent(event));
 
         Scene scene = new Scene(finalStack, 1280, 1024);
-        scene.getStylesheets().add("css/linechart.css");
         scene.getStylesheets().add("css/keyboard.css");
         scene.getStylesheets().add("css/main.css");
 
@@ -167,6 +181,7 @@ public class Main extends Application {
         List<Node> elements = new ArrayList<>();
         elements.add(kegManager.createWeightMeter());
         elements.add(kegManager.createWeightLabel());
+        elements.add(kegManager.createForecastLabel());
 
         displayManager.createKegLayout(elements);
     }
@@ -299,13 +314,7 @@ public class Main extends Application {
             ((Button) elements.get(10)).setText("Remove an Admin");
 
             // Save data
-            try {
-                voteManager.saveBeerData();
-                dataManager.writeUsersToFile();
-                dataManager.writeCurrentKeg(voteManager.getCurrentKeg(), kegManager.getTare());
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            saveData();
 
             toggleAdminPanel();
         });
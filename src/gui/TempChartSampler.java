@@ -0,0 +1,60 @@
+package gui;
+
+import dataManagement.RollupResolution;
+import dataManagement.SensorRollups;
+import dataManagement.TimeSeries;
+import tools.Downsampler;
+
+/**
+ * Picks the points of the temperature chart from the temperature history,
+ * reduced to at most a fixed number of points so that the cost of drawing
+ * does not grow with the number of readings. Minutes before the history,
+ * e.g. before a restart, are taken from the minute rollups. Holds no
+ * JavaFX nodes so it can be used without a display
+ *
+ * @author Richard
+ */
+public class TempChartSampler {
+    private final long[] historyTimes;
+    private final double[] historyTemps;
+    private final long[] chartTimes;
+    private final double[] chartTemps;
+
+    /**
+     * @param historyPoints, the number of readings charted at most
+     * @param chartPoints, the number of points drawn at most
+     */
+    public TempChartSampler(int historyPoints, int chartPoints) {
+        historyTimes = new long[historyPoints];
+        historyTemps = new double[historyPoints];
+        chartTimes = new long[chartPoints];
+        chartTemps = new double[chartPoints];
+    }
+
+    /**
+     * Picks the points between from and to
+     *
+     * @param history, the temperature history of the keg
+     * @param rollups, the rollups of older readings, may be null
+     * @return the number of points in getTimes() and getTemps()
+     */
+    public int sample(TimeSeries history, SensorRollups rollups, long from, long to) {
+        int readings = 0;
+
+        if (rollups != null) {
+            long historyStart = history.size() > 0 ? history.getTime(0) : Long.MAX_VALUE;
+            readings = rollups.getTempMeans(RollupResolution.MINUTE)
+                    .copyRange(from, Math.min(historyStart - 1, to), historyTimes, historyTemps);
+        }
+        readings += history.copyRange(from, to, historyTimes, historyTemps, readings);
+        return Downsampler.lttb(historyTimes, historyTemps, readings, chartTimes.length, chartTimes, chartTemps);
+    }
+
+    public long[] getTimes() {
+        return chartTimes;
+    }
+
+    public double[] getTemps() {
+        return chartTemps;
+    }
+}
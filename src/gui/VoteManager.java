@@ -7,7 +7,6 @@ import javafx.geometry.Pos;
 import javafx.scene.control.Button;
 import javafx.scene.layout.HBox;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Text;
 import tools.Util;
 import userInputs.KeyCardListener;
@@ -27,7 +26,7 @@ public class VoteManager {
     private final DataManager dataManager;
     private final Map<String, Integer> beerTypeLikes;
     private final List<String> beerTypes;
-    private final List<Rectangle> beerVotesBar;
+    private final BarChartCanvas beerVotesBar;
     private final HBox pollsPane;
     private final SimpleStringProperty beerDisplay, likesDisplay, currentKeg;
 
@@ -35,6 +34,7 @@ public class VoteManager {
     private static final int FIXED_BAR_WIDTH        = 55;
     private static final int MIN_BAR_HEIGHT         = 4;
     private static final int MAX_BEERS_DISPLAYED    = 10;
+    private static final int BAR_SPACING            = 10;
     private static final Color UNSELECTED           = Color.web("006B68");
     private static final Color SELECTED             = Color.web("06D3CE");
 
@@ -47,7 +47,8 @@ public class VoteManager {
         beerTypeLikes = dataManager.readBeerData();
         beerTypes = Util.toList(beerTypeLikes);
 
-        beerVotesBar = new ArrayList<>();
+        beerVotesBar = new BarChartCanvas(MAX_BEERS_DISPLAYED, FIXED_BAR_WIDTH, BAR_SPACING, MAX_BAR_HEIGHT,
+                UNSELECTED, SELECTED);
         pollsPane = new HBox();
 
         this.dataManager = dataManager;
@@ -126,8 +127,7 @@ public class VoteManager {
             beerTypeLikes.remove(beerTypes.get(currentBeer));
             beerTypes.remove(currentBeer);
 
-            pollsPane.getChildren().remove(currentBeer);
-            beerVotesBar.remove(currentBeer);
+            beerVotesBar.removeBar(currentBeer);
 
             if (currentBeer > 0) {
                 currentBeer--;
@@ -137,6 +137,7 @@ public class VoteManager {
             updatePollChart(currentBeer, true);
         }
 
+        beerVotesBar.setSelected(currentBeer - lowestIndexed);
         saveBeerData();
     }
 
@@ -182,8 +183,6 @@ public class VoteManager {
      * @return a boolean to describe whether the entry exists
      */
     public boolean addBeer(String newBeer, int votes) {
-        int index = beerTypes.size();
-
         // Check if beer exists
         if (beerTypeLikes.containsKey(newBeer)) {
             for (int i = 0; i < beerTypes.size(); i++) {
@@ -200,17 +199,10 @@ public class VoteManager {
 
         if (beerTypes.size() <= MAX_BEERS_DISPLAYED) {
             int rectHeight = votes * (MAX_BAR_HEIGHT - MIN_BAR_HEIGHT) / highestVote + MIN_BAR_HEIGHT;
-            beerVotesBar.add(new Rectangle(FIXED_BAR_WIDTH, rectHeight));
-
-            // Set action event for when the chart element is clicked
-            beerVotesBar.get(index).setOnMouseClicked(event -> goToElement(index + lowestIndexed, false));
-            beerVotesBar.get(index).setFill(UNSELECTED);
-
-            // Add all chart elements to pane
-            pollsPane.getChildren().add(beerVotesBar.get(index));
+            beerVotesBar.addBar(rectHeight);
 
             // Highlight the current element
-            beerVotesBar.get(currentBeer).setFill(SELECTED);
+            beerVotesBar.setSelected(currentBeer);
 
             updateBeerScrollList();
         }
@@ -229,17 +221,12 @@ public class VoteManager {
     }
 
     /**
-     * Attempts to save to file
+     * Queues the beer list to be saved to file on a background thread.
      */
     public void saveBeerData() {
-        try {
-            // makes deep copy of beerTypeLikes in case it is modified during
-            // save process
-            // saveData.writeBeerData(new HashMap<String, Integer>(beerTypeLikes));
-            dataManager.writeBeerData(Util.deepCopy(beerTypeLikes));
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        // makes deep copy of beerTypeLikes in case it is modified during
+        // save process
+        dataManager.saveBeerData(Util.deepCopy(beerTypeLikes));
     }
 
     /**
@@ -339,6 +326,7 @@ public class VoteManager {
 
                 String beerToUpvote = beerTypes.get(currentBeer);
                 beerTypeLikes.put(beerToUpvote, beerTypeLikes.get(beerToUpvote) + 1);
+                dataManager.logVote(beerToUpvote, beerTypeLikes.get(beerToUpvote));
                 updateBeerScrollList();
 
                 if (beerTypeLikes.get(beerToUpvote) > highestVote) {
@@ -359,7 +347,8 @@ public class VoteManager {
     /**
      * Sets the poll chart to visualize the current number of votes. The chart
      * scales to the max number of votes for a beer. MAX_BAR_HEIGHT defines the
-     * heighest bar FIXED_BAR_WIDTH defines the width of each bar
+     * heighest bar FIXED_BAR_WIDTH defines the width of each bar. All bars
+     * are drawn on a single canvas.
      *
      * @return returns an HBox container
      */
@@ -373,23 +362,18 @@ public class VoteManager {
         for (int i = 0; i < beersToDisplay; i++) {
             int rectHeight = beerTypeLikes.get(beerTypes.get(i)) * (MAX_BAR_HEIGHT - MIN_BAR_HEIGHT) / highestVote
                     + MIN_BAR_HEIGHT;
-            beerVotesBar.add(new Rectangle(FIXED_BAR_WIDTH, rectHeight));
-            beerVotesBar.get(i).setFill(UNSELECTED);
-
-            // Set action event for when the chart element is clicked
-            int finalI = i;
-            beerVotesBar.get(i).setOnMouseClicked(event -> goToElement(finalI + lowestIndexed, false));
-
-            // Add all chart elements to pane
-            pollsPane.getChildren().add(beerVotesBar.get(i));
+            beerVotesBar.addBar(rectHeight);
         }
 
+        // Set action event for when a chart element is clicked
+        beerVotesBar.setOnBarClicked(bar -> goToElement(bar + lowestIndexed, false));
+
         // Highlight the current element
         if (dataManager.isBeerDataReady()) {
-            beerVotesBar.get(currentBeer).setFill(SELECTED);
+            beerVotesBar.setSelected(currentBeer);
         }
 
-        pollsPane.setSpacing(10);
+        pollsPane.getChildren().add(beerVotesBar);
         pollsPane.setAlignment(Pos.CENTER);
         pollsPane.setMinHeight(MAX_BAR_HEIGHT);
         return pollsPane;
@@ -410,30 +394,25 @@ public class VoteManager {
             // Shift charts, must update all elements in chart
             updatePollChart(currentBeer, true);
 
-            if (beerVotesBar.size() <= MAX_BEERS_DISPLAYED) {
+            if (beerVotesBar.getBarCount() <= MAX_BEERS_DISPLAYED) {
                 if (newIndex == 0) {
-                    beerVotesBar.get(beerVotesBar.size() - 1).setFill(UNSELECTED);
-                    beerVotesBar.get(0).setFill(SELECTED);
+                    beerVotesBar.setSelected(0);
                 } else {
-                    beerVotesBar.get(0).setFill(UNSELECTED);
-                    beerVotesBar.get(beerVotesBar.size() - 1).setFill(SELECTED);
+                    beerVotesBar.setSelected(beerVotesBar.getBarCount() - 1);
                 }
             }
             // Swap highlighted element from last to first
             else if (lowestIndexed == 0) {
-                beerVotesBar.get(beerVotesBar.size() - 1).setFill(UNSELECTED);
-                beerVotesBar.get(0).setFill(SELECTED);
+                beerVotesBar.setSelected(0);
             }
             // Swap highlighted element from first to last
             else {
-                beerVotesBar.get(0).setFill(UNSELECTED);
-                beerVotesBar.get(beerVotesBar.size() - 1).setFill(SELECTED);
+                beerVotesBar.setSelected(beerVotesBar.getBarCount() - 1);
             }
 
             // Next element is within the range that is currently displayed
         } else if (newIndex >= lowestIndexed && newIndex < lowestIndexed + MAX_BEERS_DISPLAYED) {
-            beerVotesBar.get(currentBeer - lowestIndexed).setFill(UNSELECTED);
-            beerVotesBar.get(newIndex - lowestIndexed).setFill(SELECTED);
+            beerVotesBar.setSelected(newIndex - lowestIndexed);
 
             // Next element is lower than the range that is currently displayed
         } else if (newIndex < lowestIndexed) {
@@ -471,12 +450,12 @@ public class VoteManager {
                 int relativeIndex = lowestIndexed + i;
                 int newHeight = beerTypeLikes.get(beerTypes.get(relativeIndex)) * (MAX_BAR_HEIGHT - MIN_BAR_HEIGHT)
                         / highestVote + MIN_BAR_HEIGHT;
-                beerVotesBar.get(i).setHeight(newHeight);
+                beerVotesBar.setBarHeight(i, newHeight);
             }
         } else {
             int newHeight = beerTypeLikes.get(beerTypes.get(beerToUpdate)) * (MAX_BAR_HEIGHT - MIN_BAR_HEIGHT)
                     / highestVote + MIN_BAR_HEIGHT;
-            beerVotesBar.get(beerToUpdate - lowestIndexed).setHeight(newHeight);
+            beerVotesBar.setBarHeight(beerToUpdate - lowestIndexed, newHeight);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import dataManagement.ConsumptionEstimator;
+
+public class ConsumptionEstimatorTest {
+
+    private static final long START = 1500000000000L;
+    private static final long HOUR = 3600000;
+
+    @Test
+    public void rateAndTimeToEmptyTest() {
+        ConsumptionEstimator estimator = new ConsumptionEstimator(HOUR, 3);
+        Random random = new Random(7);
+        assertEquals(Double.POSITIVE_INFINITY, estimator.getTimeToEmpty(0), 0);
+
+        // 2 L an hour for 3 hours, a reading every 2 s with noise of the scale
+        for (long t = 0; t <= 3 * HOUR; t += 2000) {
+            estimator.add(START + t, 20 - 2.0 * t / HOUR + random.nextGaussian() * 0.3);
+        }
+
+        assertEquals(2, estimator.getRate(), 0.05);
+        assertEquals(14, estimator.getLevel(), 0.1);
+        assertEquals(7, estimator.getTimeToEmpty(0), 0.3);
+        assertEquals(0, estimator.getResetCount());
+    }
+
+    @Test
+    public void newKegTest() {
+        ConsumptionEstimator estimator = new ConsumptionEstimator(HOUR, 3);
+        for (long t = 0; t <= HOUR; t += 60000) {
+            estimator.add(START + t, 5 - 1.0 * t / HOUR);
+        }
+        assertEquals(1, estimator.getRate(), 1e-6);
+
+        // a full keg is tapped and nothing is poured from it yet
+        for (long t = HOUR + 60000; t <= 2 * HOUR; t += 60000) {
+            estimator.add(START + t, 30);
+        }
+
+        assertEquals(1, estimator.getResetCount());
+        assertEquals(0, estimator.getRate(), 1e-9);
+        assertEquals(30, estimator.getLevel(), 1e-9);
+        assertEquals(Double.POSITIVE_INFINITY, estimator.getTimeToEmpty(0), 0);
+    }
+}
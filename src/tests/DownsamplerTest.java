@@ -0,0 +1,55 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import tools.Downsampler;
+
+public class DownsamplerTest {
+
+    @Test
+    public void keepShapeTest() {
+        int count = 1000;
+        long[] x = new long[count];
+        double[] y = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = 1500000000000L + i * 2000L;
+            y[i] = 277 + Math.sin(i / 50.0) * 0.1;
+        }
+        y[421] = 290; // door left open
+        y[777] = 265;
+
+        long[] outX = new long[50];
+        double[] outY = new double[50];
+        assertEquals(50, Downsampler.lttb(x, y, count, 50, outX, outY));
+
+        // the end points and both spikes are kept, in order
+        assertEquals(x[0], outX[0]);
+        assertEquals(x[count - 1], outX[49]);
+        boolean peak = false;
+        boolean dip = false;
+        for (int i = 0; i < 50; i++) {
+            peak |= outY[i] == 290;
+            dip |= outY[i] == 265;
+            if (i > 0) {
+                assertTrue(outX[i] > outX[i - 1]);
+            }
+        }
+        assertTrue(peak);
+        assertTrue(dip);
+    }
+
+    @Test
+    public void fewPointsTest() {
+        long[] x = { 1, 2, 3 };
+        double[] y = { 4, 5, 6 };
+        long[] outX = new long[10];
+        double[] outY = new double[10];
+
+        assertEquals(3, Downsampler.lttb(x, y, 3, 10, outX, outY));
+        assertEquals(3, outX[2]);
+        assertEquals(6, outY[2], 0);
+        assertEquals(0, Downsampler.lttb(x, y, 0, 10, outX, outY));
+    }
+}
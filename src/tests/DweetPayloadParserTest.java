@@ -0,0 +1,78 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+import dataManagement.DweetPayloadParser;
+
+public class DweetPayloadParserTest {
+
+    private static boolean parseDweet(DweetPayloadParser parser, String dweet) {
+        byte[] bytes = dweet.getBytes(StandardCharsets.UTF_8);
+        return parser.parseDweet(bytes, 0, bytes.length);
+    }
+
+    private static boolean parseContent(DweetPayloadParser parser, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return parser.parseContent(bytes, 0, bytes.length);
+    }
+
+    private static String dweet(String created, String content) {
+        return "{\"this\":\"succeeded\",\"by\":\"getting\",\"the\":\"dweets\",\"with\":[{\"thing\":"
+                + "\"teradici-beer-fridge\",\"created\":\"" + created + "\",\"content\":" + content + "}]}";
+    }
+
+    @Test
+    public void parseDweetTest() {
+        DweetPayloadParser parser = new DweetPayloadParser();
+
+        assertTrue(parseDweet(parser, dweet("2016-07-20T18:00:00.000Z", "{\"weight\":12.5,\"temp\":4}")));
+        assertEquals(12.5, parser.getWeight(), 0);
+        assertEquals(4, parser.getTemp(), 0);
+        assertFalse(parser.isRepeated());
+
+        assertTrue(parseDweet(parser, dweet("2016-07-20T18:00:00.000Z", "{\"weight\":12.5,\"temp\":4}")));
+        assertTrue(parser.isRepeated());
+
+        // other fields, whitespace, string values and exponents
+        assertTrue(parseDweet(parser, dweet("2016-07-20T18:00:05.000Z",
+                "{ \"id\" : [1, {\"a\": null}, true], \"temp\" : \"-2.5E-1\",\n\"weight\" : 1.05e1 }")));
+        assertFalse(parser.isRepeated());
+        assertEquals(10.5, parser.getWeight(), 0);
+        assertEquals(-0.25, parser.getTemp(), 0);
+    }
+
+    @Test
+    public void malformedTest() {
+        DweetPayloadParser parser = new DweetPayloadParser();
+        String[] malformed = { "", "not json", "{}", "{\"with\":[]}", dweet("x", "{\"weight\":12.5}"),
+                dweet("x", "{\"weight\":\"heavy\",\"temp\":4}"), dweet("x", "{\"weight\":12.5,\"temp\":4"),
+                "{\"this\":\"failed\",\"with\":\"we couldn't find this\"}" };
+        for (String dweet : malformed) {
+            assertFalse(dweet, parseDweet(parser, dweet));
+        }
+
+        assertTrue(parseContent(parser, " {\"weight\":21.5,\"temp\":3.5} "));
+        assertEquals(21.5, parser.getWeight(), 0);
+        assertFalse(parseContent(parser, "{\"weight\":21.5,\"temp\":3.5} trailing"));
+        assertFalse(parseContent(parser, "{\"weight\":2..5,\"temp\":3.5}"));
+    }
+
+    @Test
+    public void exactNumbersTest() {
+        DweetPayloadParser parser = new DweetPayloadParser();
+        Random random = new Random(13);
+
+        for (int i = 0; i < 10000; i++) {
+            double weight = random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+            String temp = String.valueOf(random.nextInt(1000000) / 1000.0);
+            assertTrue(parseContent(parser, "{\"weight\":" + weight + ",\"temp\":" + temp + "}"));
+            assertEquals(weight, parser.getWeight(), 0);
+            assertEquals(Double.parseDouble(temp), parser.getTemp(), 0);
+        }
+    }
+}
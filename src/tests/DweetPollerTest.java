@@ -0,0 +1,119 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import dataManagement.DweetManager;
+import dataManagement.DweetPoller;
+
+public class DweetPollerTest {
+
+    private static final String DWEET = "{\"this\":\"succeeded\",\"by\":\"getting\",\"the\":\"dweets\",\"with\":"
+            + "[{\"thing\":\"teradici-beer-fridge\",\"created\":\"2016-07-20T18:00:00.000Z\","
+            + "\"content\":{\"weight\":12.5,\"temp\":4}}]}";
+    private static final String ETAG = "\"dweet-1\"";
+
+    private HttpServer server;
+    private DweetManager dweetManager;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        if (dweetManager != null) {
+            dweetManager.stop();
+        }
+        server.stop(0);
+    }
+
+    private String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/dweet";
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("ETag", ETAG);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out waiting for the poller", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void conditionalPollTest() throws InterruptedException {
+        server.createContext("/dweet", exchange -> {
+            requests.incrementAndGet();
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                respond(exchange, DWEET);
+            }
+        });
+
+        DweetPoller poller = new DweetPoller(url(), 20, 1000);
+        dweetManager = new DweetManager(poller, Runnable::run);
+        await(() -> poller.getNotModifiedCount() >= 2);
+
+        assertEquals(12.5, dweetManager.weightProperty().get(), 0);
+        assertEquals(4, dweetManager.tempProperty().get(), 0);
+        assertEquals(0, poller.getFailureCount());
+        assertTrue(poller.getLastSuccessTime() > 0);
+        assertTrue(poller.getLatencyHistogram().getCount() >= 3);
+    }
+
+    @Test
+    public void recoverFromTimeoutTest() throws InterruptedException {
+        server.createContext("/dweet", exchange -> {
+            int request = requests.incrementAndGet();
+            try {
+                if (request == 1) {
+                    Thread.sleep(1000);
+                } else if (request == 2) {
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                }
+                respond(exchange, DWEET);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            } finally {
+                exchange.close();
+            }
+        });
+
+        DweetPoller poller = new DweetPoller(url(), 20, 200);
+        dweetManager = new DweetManager(poller, Runnable::run);
+        await(() -> dweetManager.weightProperty().get() == 12.5);
+
+        assertEquals(2, poller.getFailureCount());
+        assertEquals(4, dweetManager.tempProperty().get(), 0);
+    }
+}
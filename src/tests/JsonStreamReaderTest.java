@@ -0,0 +1,64 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import dataManagement.JsonStreamReader;
+
+public class JsonStreamReaderTest {
+
+    private static JsonStreamReader createReader(String json) {
+        return new JsonStreamReader(
+                Channels.newChannel(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void readNestedTest() throws IOException {
+        JsonStreamReader json = createReader(
+                "{\"skip\": {\"a\": [1, 2.5, null, \"x\"]}, \"beers\": [{\"Caf\\u00e9 \\\"IPA\\\"\": 12}, {\"Stout\": -3}],"
+                        + " \"flag\": true}");
+
+        json.beginObject();
+        assertTrue(json.hasNext());
+        assertEquals("skip", json.nextName());
+        json.skipValue();
+
+        assertTrue(json.hasNext());
+        assertEquals("beers", json.nextName());
+        json.beginArray();
+        json.beginObject();
+        assertEquals("Caf\u00e9 \"IPA\"", json.nextName());
+        assertEquals(12, json.nextInt());
+        assertFalse(json.hasNext());
+        json.endObject();
+        assertTrue(json.hasNext());
+        json.beginObject();
+        assertEquals("Stout", json.nextName());
+        assertEquals(-3, json.nextInt());
+        json.endObject();
+        assertFalse(json.hasNext());
+        json.endArray();
+
+        assertTrue(json.hasNext());
+        assertEquals("flag", json.nextName());
+        assertTrue(json.nextBoolean());
+        assertFalse(json.hasNext());
+        json.endObject();
+        json.endDocument();
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedDocumentTest() throws IOException {
+        JsonStreamReader json = createReader("{\"beers\": [{\"Stout\": 3}, {\"Lag");
+
+        json.beginObject();
+        json.nextName();
+        json.skipValue();
+    }
+}
@@ -0,0 +1,62 @@
+package tests;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypts user strings the way user files were written before users were
+ * stored as hashes, to create old user files for the tests and benchmarks.
+ * The key is derived from the salt in SALT_FILE exactly like UserCrypto
+ * derives the key it decrypts old user files with.
+ *
+ * @author Aidan
+ *
+ */
+public final class LegacyUserCipher {
+
+    private static final int KEY_DERIVATION_ITERATION = 65536;
+    private static final int KEY_SIZE = 128;
+    private static final char[] PASSWORD = { 'z', 'e', 'r', 'o', 'c', 'l', 'i', 'e', 'n', 't' };
+
+    private final SecretKey secretKey;
+    private final Cipher cipher;
+
+    /**
+     * @param salt
+     *            byte[] read from SALT_FILE.
+     * @throws GeneralSecurityException
+     *             if the platform does not support the required algorithms.
+     */
+    public LegacyUserCipher(byte[] salt) throws GeneralSecurityException {
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        SecretKey tmpKey = factory
+                .generateSecret(new PBEKeySpec(PASSWORD, salt, KEY_DERIVATION_ITERATION, KEY_SIZE));
+        secretKey = new SecretKeySpec(tmpKey.getEncoded(), "AES");
+        cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+    }
+
+    /**
+     * Encrypts plainText with a fresh initialization vector.
+     *
+     * @param plainText
+     *            String to be encrypted. Must not be the empty string.
+     * @return String[] of length 2 containing the base64 encoded encrypted
+     *         plainText at index 0 and its initialization vector at index 1.
+     * @throws GeneralSecurityException
+     *             if plainText could not be encrypted.
+     */
+    public String[] encrypt(String plainText) throws GeneralSecurityException {
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+        byte[] iv = cipher.getIV();
+        byte[] ciphertext = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+
+        return new String[] { Base64.getEncoder().encodeToString(ciphertext), Base64.getEncoder().encodeToString(iv) };
+    }
+}
@@ -0,0 +1,97 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.Test;
+
+import dataManagement.PourDetector;
+import dataManagement.PourEvent;
+import dataManagement.PourLog;
+
+public class PourTest {
+
+    private static final long DAY = 86400000L;
+    private static final long START = 1500000000000L / DAY * DAY; // midnight UTC
+
+    @Test
+    public void detectPoursTest() {
+        PourDetector detector = new PourDetector(0.2, 2.5, 0.05, 6000, 30000);
+        long t = START;
+        double weight = 20;
+
+        // readings every 100 ms, settled at first
+        for (int i = 0; i < 100; i++, t += 100) {
+            assertEquals(0, detector.add(t, weight + (i % 2) * 0.02), 0);
+        }
+
+        // 0.5 L poured over 5 s, then the weight settles
+        long pourStart = t;
+        double poured = 0;
+        for (int i = 0; i < 200; i++, t += 100) {
+            weight = Math.max(19.5, weight - 0.01);
+            poured += detector.add(t, weight);
+        }
+        assertEquals(0.5, poured, 0.03);
+        assertEquals(1, detector.getPourCount());
+        assertEquals(pourStart, detector.getLastPourTime(), 500);
+        assertFalse(detector.isPouring());
+
+        // slow drift and a new keg are not pours
+        for (int i = 0; i < 3000; i++, t += 100) {
+            weight -= 0.0002;
+            assertEquals(0, detector.add(t, weight), 0);
+        }
+        assertFalse(detector.isPouring());
+        for (int i = 0; i < 100; i++, t += 100) {
+            assertEquals(0, detector.add(t, 30), 0);
+        }
+        assertEquals(30, detector.getLevel(), 0);
+
+        // a small drop is not a pour either
+        for (int i = 0; i < 100; i++, t += 100) {
+            assertEquals(0, detector.add(t, 29.9), 0);
+        }
+        assertEquals(1, detector.getPourCount());
+
+        // lifting the keg off the scale and putting a new one on is not a pour
+        for (int i = 0; i < 100; i++, t += 100) {
+            assertEquals(0, detector.add(t, 0), 0);
+        }
+        for (int i = 0; i < 100; i++, t += 100) {
+            assertEquals(0, detector.add(t, 30), 0);
+        }
+        assertEquals(30, detector.getLevel(), 0);
+        assertEquals(1, detector.getPourCount());
+    }
+
+    @Test
+    public void pourLogTest() throws IOException {
+        String path = Files.createTempDirectory("beer_fridge_test").toString() + System.getProperty("file.separator")
+                + "pours.log";
+        PourLog log = new PourLog(path);
+        log.add(new PourEvent(START + 1000, 0.5, "Kronenbourg 1664"));
+        log.add(new PourEvent(START + 2000, 0.3, "Kronenbourg 1664"));
+        log.add(new PourEvent(START + DAY + 1000, 0.4, "Guinness"));
+        log.flush();
+
+        PourLog reloaded = new PourLog(path);
+        assertEquals(3, reloaded.size());
+
+        List<PourEvent> firstDay = reloaded.getPoursOfDay(LocalDate.of(2017, 7, 14), ZoneOffset.UTC);
+        assertEquals(2, firstDay.size());
+        assertEquals(0.8, PourLog.getTotalVolume(firstDay), 1e-9);
+        assertEquals(START + 1000, firstDay.get(0).getTime());
+
+        List<PourEvent> guinness = reloaded.getPoursOfKeg("Guinness");
+        assertEquals(1, guinness.size());
+        assertEquals(0.4, guinness.get(0).getVolume(), 0);
+        assertTrue(reloaded.getPoursOfKeg("Stella").isEmpty());
+        assertEquals("Kronenbourg 1664", reloaded.getPours(START, START + DAY).get(1).getKeg());
+    }
+}
@@ -2,20 +2,31 @@ package tests;
 
 import static org.junit.Assert.*;
 
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import dataManagement.DataManager;
+import dataManagement.SnapshotFormat;
 
 public class SaveDataTest {
 
@@ -134,4 +145,268 @@ public class SaveDataTest {
         assertEquals(100.1, obj[1]);
     }
 
+    @Test
+    public void migrateEncryptedUsersTest() throws IOException, JSONException, GeneralSecurityException {
+        String dir = Files.createTempDirectory("beer_fridge_test").toString() + System.getProperty("file.separator");
+        new DataManager(dir); // creates salt file
+
+        LegacyUserCipher cipher = new LegacyUserCipher(Files.readAllBytes(Paths.get(dir + "hac.bin")));
+        JSONArray users = new JSONArray();
+        for (int i = 0; i < 5; i++) {
+            String[] encrypted = cipher.encrypt("user" + i);
+            JSONObject user = new JSONObject();
+            user.put("id", encrypted[0]);
+            user.put("iv", encrypted[1]);
+            user.put("admin", i == 0);
+            user.put("voted", i == 1);
+            users.put(user);
+        }
+
+        FileWriter writer = new FileWriter(dir + "user_data.json");
+        writer.write(new JSONObject().put("users", users).toString());
+        writer.close();
+
+        DataManager save = new DataManager(dir);
+        assertTrue(save.checkUserExists("user4"));
+        assertTrue(save.checkAdmin("user0"));
+        assertTrue(save.checkVoted("user1"));
+        assertFalse(save.checkAdmin("user1"));
+        assertFalse(save.checkUserExists("user5"));
+
+        // user file is rewritten without encrypted ids
+        String contents = new String(Files.readAllBytes(Paths.get(dir + "user_data.json")), "UTF-8");
+        assertFalse(contents.contains("\"iv\""));
+
+        save = new DataManager(dir);
+        assertTrue(save.checkAdmin("user0"));
+        assertTrue(save.checkVoted("user1"));
+    }
+
+    @Test
+    public void userJournalReplayTest() throws IOException, JSONException {
+        String dir = Files.createTempDirectory("beer_fridge_test").toString() + System.getProperty("file.separator");
+        DataManager save = new DataManager(dir);
+
+        for (int i = 0; i < 5; i++) {
+            save.addUser("user" + i);
+        }
+        save.setAdmin("user0", true);
+        save.setVoted("user1", true);
+        save.setVoted("user2", true);
+        save.writeUsersToFile();
+
+        save.resetVotes();
+        save.setVoted("user3", true);
+        save.setAdmin("user0", false);
+        save.setAdmin("user4", true);
+        save.writeUsersToFile();
+
+        // journal only, USER_FILE was never written in full
+        assertTrue(Files.exists(Paths.get(dir + "user_journal.log")));
+
+        save = new DataManager(dir);
+        assertTrue(save.checkUserExists("user2"));
+        assertFalse(save.checkAdmin("user0"));
+        assertTrue(save.checkAdmin("user4"));
+        assertFalse(save.checkVoted("user1"));
+        assertFalse(save.checkVoted("user2"));
+        assertTrue(save.checkVoted("user3"));
+
+        // enough changes to compact the journal into USER_FILE
+        for (int i = 0; i < 1000; i++) {
+            save.setVoted("user" + (i % 5), i % 2 == 0);
+        }
+        save.writeUsersToFile();
+        assertEquals(0, Files.size(Paths.get(dir + "user_journal.log")));
+        assertFalse(Files.exists(Paths.get(dir + "user_journal.log.old")));
+
+        save = new DataManager(dir);
+        assertTrue(save.checkVoted("user3")); // 998 % 5 == 3, set to true last
+        assertFalse(save.checkVoted("user4"));
+        assertTrue(save.checkAdmin("user4"));
+    }
+
+    @Test
+    public void recoverTruncatedBeerFileTest() throws IOException, JSONException {
+        String dir = Files.createTempDirectory("beer_fridge_test").toString() + System.getProperty("file.separator");
+        DataManager save = new DataManager(dir);
+
+        Map<String, Integer> beers = new HashMap<String, Integer>();
+        beers.put("beer0", 1);
+        save.writeBeerData(beers);
+        beers.put("beer1", 2);
+        save.writeBeerData(beers);
+
+        // simulate a write cut short by a crash
+        byte[] contents = Files.readAllBytes(Paths.get(dir + "beer_data.json"));
+        Files.write(Paths.get(dir + "beer_data.json"), Arrays.copyOf(contents, contents.length / 2));
+
+        Map<String, Integer> recovered = new DataManager(dir).readBeerData();
+        assertEquals(1, recovered.size());
+        assertEquals(Integer.valueOf(1), recovered.get("beer0"));
+    }
+
+    @Test
+    public void recoverMissingUserFileTest() throws IOException, JSONException {
+        String dir = Files.createTempDirectory("beer_fridge_test").toString() + System.getProperty("file.separator");
+        DataManager save = new DataManager(dir);
+        save.addUser("user0");
+        save.compactUsers();
+        save.addUser("user1");
+        save.compactUsers();
+        save.close();
+
+        // simulate a crash after the data file was moved to its newest backup
+        // but before the new contents were moved into place
+        Files.move(Paths.get(dir + "user_data.json"), Paths.get(dir + "user_data.json.1"),
+                StandardCopyOption.REPLACE_EXISTING);
+        Files.write(Paths.get(dir + "user_data.json.tmp"), new byte[0]);
+
+        DataManager recovered = new DataManager(dir);
+        assertTrue(recovered.checkUserExists("user0"));
+        assertTrue(recovered.checkUserExists("user1"));
+        recovered.close();
+    }
+
+    @Test
+    public void replayNewBeerTest() throws IOException, JSONException {
+        String dir = Files.createTempDirectory("beer_fridge_test").toString() + System.getProperty("file.separator");
+        DataManager save = new DataManager(dir);
+        Map<String, Integer> beers = save.readBeerData();
+        beers.put("beer0", 3);
+        save.writeBeerData(beers);
+
+        // a beer replaces beer0 and is voted for, but BEER_FILE is never
+        // written, as if the program crashed within the save delay
+        Files.createDirectory(Paths.get(dir + "beer_data.json.tmp"));
+        beers = new HashMap<String, Integer>();
+        beers.put("beer1", 0);
+        save.saveBeerData(beers);
+        save.logVote("beer1", 1);
+        save.close();
+
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        expected.put("beer1", 1);
+        assertEquals(expected, new DataManager(dir).readBeerData());
+    }
+
+    @Test
+    public void coalesceBeerSavesTest() throws IOException {
+        String dir = Files.createTempDirectory("beer_fridge_test").toString() + System.getProperty("file.separator");
+        DataManager save = new DataManager(dir);
+
+        for (int i = 0; i < 10; i++) {
+            Map<String, Integer> beers = new HashMap<String, Integer>();
+            beers.put("beer0", i);
+            save.saveBeerData(beers);
+        }
+        assertEquals(1, save.getPersistenceService().getQueueDepth());
+
+        save.flushSaves();
+        assertEquals(0, save.getPersistenceService().getQueueDepth());
+        assertEquals(1, save.getPersistenceService().getWriteCount());
+        assertEquals(9, save.getPersistenceService().getCoalescedCount());
+        assertEquals(Integer.valueOf(9), new DataManager(dir).readBeerData().get("beer0"));
+    }
+
+    @Test
+    public void binarySnapshotTest() throws IOException, JSONException {
+        String dir = Files.createTempDirectory("beer_fridge_test").toString() + System.getProperty("file.separator");
+        DataManager save = new DataManager(dir);
+        save.addUser("user0");
+        save.setAdmin("user1", true);
+        save.compactUsers();
+
+        Map<String, Integer> beers = new HashMap<String, Integer>();
+        beers.put("beer0", 4);
+        beers.put("beer1", 7);
+        save.writeBeerData(beers);
+
+        // JSON files are imported into binary snapshots
+        save = new DataManager(dir, SnapshotFormat.BINARY);
+        assertEquals(beers, save.readBeerData());
+        assertTrue(save.checkAdmin("user1"));
+        save.setVoted("user0", true);
+        save.compactUsers();
+        beers.put("beer2", 1);
+        save.writeBeerData(beers);
+        assertTrue(Files.exists(Paths.get(dir + "user_data.bin")));
+        assertTrue(Files.exists(Paths.get(dir + "beer_data.bin")));
+
+        save = new DataManager(dir, SnapshotFormat.BINARY);
+        assertEquals(beers, save.readBeerData());
+        assertTrue(save.checkVoted("user0"));
+        assertFalse(save.checkAdmin("user0"));
+        assertTrue(save.checkAdmin("user1"));
+        assertFalse(save.checkVoted("user1"));
+    }
+
+    @Test
+    public void mappedUserTableTest() throws IOException, JSONException {
+        String dir = Files.createTempDirectory("beer_fridge_test").toString() + System.getProperty("file.separator");
+        DataManager save = new DataManager(dir, SnapshotFormat.MAPPED);
+
+        // enough users to grow the table a few times
+        for (int i = 0; i < 3000; i++) {
+            save.addUser("user" + i);
+        }
+        save.setAdmin("user7", true);
+        save.setVoted("user8", true);
+        save.setVoted("user9", true);
+        save.setVoted("user9", false);
+        save.compactUsers();
+        save.writeUsersToFile();
+
+        assertTrue(Files.exists(Paths.get(dir + "user_table.bin")));
+        assertEquals(0, Files.size(Paths.get(dir + "user_journal.log")));
+
+        save = new DataManager(dir, SnapshotFormat.MAPPED);
+        assertTrue(save.checkUserExists("user2999"));
+        assertFalse(save.checkUserExists("user3000"));
+        assertTrue(save.checkAdmin("user7"));
+        assertFalse(save.checkAdmin("user8"));
+        assertTrue(save.checkVoted("user8"));
+        assertFalse(save.checkVoted("user9"));
+
+        save.resetVotes();
+        assertFalse(save.checkVoted("user8"));
+        save.close();
+
+        // a damaged table is not silently replaced by stale users
+        Files.write(Paths.get(dir + "user_table.bin"), new byte[] { 1, 2, 3 }, StandardOpenOption.APPEND);
+        try {
+            new DataManager(dir, SnapshotFormat.MAPPED);
+            fail("Opened a damaged user table");
+        } catch (UncheckedIOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void voteEpochTest() throws IOException, JSONException {
+        String dir = Files.createTempDirectory("beer_fridge_test").toString() + System.getProperty("file.separator");
+        DataManager save = new DataManager(dir);
+        save.setVoted("user0", true);
+        save.setVoted("user1", true);
+        save.resetVotes();
+        save.setVoted("user1", true);
+
+        assertEquals(2, save.getVoteEpoch());
+        assertFalse(save.checkVoted("user0"));
+        assertTrue(save.checkVoted("user1"));
+        assertEquals(1, save.getLastVoteEpoch("user0"));
+        save.writeUsersToFile();
+
+        // replayed from the journal, then from USER_FILE
+        for (int i = 0; i < 2; i++) {
+            save = new DataManager(dir);
+            assertEquals(2, save.getVoteEpoch());
+            assertFalse(save.checkVoted("user0"));
+            assertTrue(save.checkVoted("user1"));
+            assertEquals(1, save.getLastVoteEpoch("user0"));
+            save.compactUsers();
+            save.writeUsersToFile();
+        }
+    }
+
 }
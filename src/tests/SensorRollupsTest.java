@@ -0,0 +1,98 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import dataManagement.RollupResolution;
+import dataManagement.SensorRollups;
+import dataManagement.TimeSeries;
+
+public class SensorRollupsTest {
+
+    private static final long DAY = 86400000L;
+    private static final long START = 1500000000000L / DAY * DAY; // midnight
+
+    private static List<double[]> readAll(SensorRollups rollups, RollupResolution resolution) throws IOException {
+        List<double[]> aggregates = new ArrayList<double[]>();
+        rollups.read(resolution, Long.MIN_VALUE, Long.MAX_VALUE,
+                (start, count, minWeight, maxWeight, meanWeight, minTemp, maxTemp, meanTemp) -> aggregates
+                        .add(new double[] { start, count, minWeight, maxWeight, meanWeight, minTemp, maxTemp, meanTemp }));
+        return aggregates;
+    }
+
+    @Test
+    public void rollupAndReloadTest() throws IOException {
+        String dir = Files.createTempDirectory("beer_fridge_test").toString() + System.getProperty("file.separator");
+        SensorRollups rollups = new SensorRollups(dir);
+
+        // readings every 20 s for 3 minutes, weight dropping 1 per reading
+        for (int i = 0; i < 9; i++) {
+            rollups.add(START + i * 20000, 30 - i, 277 + i % 3);
+        }
+
+        // the first two minutes are over, the third is still open
+        TimeSeries temps = rollups.getTempMeans(RollupResolution.MINUTE);
+        assertEquals(2, temps.size());
+        assertEquals(START + 60000, temps.getTime(1));
+        assertEquals(278, temps.getValue(1), 1e-9);
+
+        rollups.flush();
+        rollups.close();
+
+        // readings after a restart in the same minute are merged on read
+        rollups = new SensorRollups(dir);
+        assertEquals(3, rollups.getTempMeans(RollupResolution.MINUTE).size());
+        rollups.add(START + 170000, 10, 280);
+        rollups.add(START + 180000, 10, 280);
+        rollups.flush();
+
+        List<double[]> minutes = readAll(rollups, RollupResolution.MINUTE);
+        assertEquals(4, minutes.size());
+        double[] third = minutes.get(2);
+        assertEquals(START + 120000, (long) third[0]);
+        assertEquals(4, third[1], 0);
+        assertEquals(10, third[2], 0); // min weight
+        assertEquals(24, third[3], 0); // max weight
+        assertEquals((24 + 23 + 22 + 10) / 4.0, third[4], 1e-9);
+        assertEquals(280, third[6], 0); // max temp
+
+        List<double[]> days = readAll(rollups, RollupResolution.DAY);
+        assertEquals(1, days.size());
+        assertEquals(11, days.get(0)[1], 0);
+        assertEquals(10, days.get(0)[2], 0);
+        assertEquals(30, days.get(0)[3], 0);
+        rollups.close();
+    }
+
+    @Test
+    public void retentionTest() throws IOException {
+        String dir = Files.createTempDirectory("beer_fridge_test").toString() + System.getProperty("file.separator");
+        Map<RollupResolution, Long> retention = new EnumMap<RollupResolution, Long>(RollupResolution.class);
+        retention.put(RollupResolution.MINUTE, 2 * DAY);
+        SensorRollups rollups = new SensorRollups(dir, retention, DAY);
+
+        // one reading a minute apart every day for five days
+        for (int day = 0; day < 5; day++) {
+            rollups.add(START + day * DAY, 20, 277);
+            rollups.add(START + day * DAY + 60000, 20, 277);
+        }
+        rollups.flush();
+        rollups.compact();
+
+        // minute segments of the first days are gone, hours and days are kept
+        assertEquals(START + 2 * DAY, (long) readAll(rollups, RollupResolution.MINUTE).get(0)[0]);
+        assertEquals(START, (long) readAll(rollups, RollupResolution.HOUR).get(0)[0]);
+        assertEquals(5, readAll(rollups, RollupResolution.DAY).size());
+        assertFalse(new File(dir, "MINUTE-" + START + ".seg").exists());
+        rollups.close();
+    }
+}
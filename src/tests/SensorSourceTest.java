@@ -0,0 +1,221 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import dataManagement.DweetManager;
+import dataManagement.FallbackSensorSource;
+import dataManagement.LineSensorSource;
+import dataManagement.ReplaySensorSource;
+import dataManagement.SensorSample;
+import dataManagement.SensorSource;
+import dataManagement.UdpSensorSource;
+import dataManagement.WeightFilter;
+
+public class SensorSourceTest {
+
+    /**
+     * Delivers readings only when told to.
+     */
+    private static class ManualSource implements SensorSource {
+        private volatile Listener listener = null;
+
+        @Override
+        public void start(Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void stop() {
+            listener = null;
+        }
+
+        boolean isStarted() {
+            return listener != null;
+        }
+
+        void send(double weight, double temp) {
+            Listener current = listener;
+            if (current != null) {
+                current.onReading(weight, temp);
+            }
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out waiting for a reading", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static void sendDatagram(int port, String content) throws IOException {
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.send(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)),
+                    new InetSocketAddress("localhost", port));
+        }
+    }
+
+    @Test
+    public void udpSourceTest() throws IOException, InterruptedException {
+        UdpSensorSource source = new UdpSensorSource(0);
+        DweetManager dweetManager = new DweetManager(source, Runnable::run);
+
+        try {
+            sendDatagram(source.getPort(), "not json");
+            sendDatagram(source.getPort(), "{\"weight\":21.5,\"temp\":3.5}");
+            await(() -> dweetManager.weightProperty().get() == 21.5);
+            assertEquals(3.5, dweetManager.tempProperty().get(), 0);
+            assertEquals(1, source.getDroppedCount());
+        } finally {
+            dweetManager.stop();
+        }
+        assertEquals(-1, source.getPort());
+    }
+
+    @Test
+    public void fallbackTest() throws InterruptedException {
+        ManualSource primary = new ManualSource();
+        ManualSource fallback = new ManualSource();
+        FallbackSensorSource source = new FallbackSensorSource(primary, fallback, 50);
+        DweetManager dweetManager = new DweetManager(source, Runnable::run, new WeightFilter(1, 0, 0));
+
+        try {
+            // primary is silent, so the fallback takes over
+            await(() -> fallback.isStarted());
+            assertTrue(source.isFallbackActive());
+            fallback.send(10, 4);
+            assertEquals(10, dweetManager.weightProperty().get(), 0);
+
+            // a reading from primary stops the fallback again
+            primary.send(11, 5);
+            assertFalse(source.isFallbackActive());
+            assertFalse(fallback.isStarted());
+            assertEquals(11, dweetManager.weightProperty().get(), 0);
+            assertEquals(5, dweetManager.tempProperty().get(), 0);
+        } finally {
+            dweetManager.stop();
+        }
+        assertFalse(primary.isStarted());
+    }
+
+    @Test
+    public void tapNewKegTest() {
+        ManualSource source = new ManualSource();
+        DweetManager dweetManager = new DweetManager(source, Runnable::run, new WeightFilter(5, 0.0001, 0.25));
+
+        try {
+            for (int i = 0; i < 50; i++) {
+                source.send(8, 4);
+            }
+            // the filter only slowly follows the full keg put on the scale
+            source.send(30, 4);
+            source.send(30, 4);
+            assertEquals(30, dweetManager.getRawWeight(), 0);
+            assertTrue(dweetManager.weightProperty().get() < 10);
+
+            assertEquals(30, dweetManager.tapNewKeg(), 0);
+            source.send(30, 4);
+            assertEquals(30, dweetManager.weightProperty().get(), 0);
+        } finally {
+            dweetManager.stop();
+        }
+    }
+
+    @Test
+    public void lineSourceTest() throws IOException, InterruptedException {
+        File fifo = new File(Files.createTempDirectory("beer_fridge_test").toFile(), "sensor");
+        int mkfifo;
+        try {
+            mkfifo = new ProcessBuilder("mkfifo", fifo.getPath()).start().waitFor();
+        } catch (IOException e) {
+            mkfifo = -1;
+        }
+        Assume.assumeTrue("mkfifo is not available", mkfifo == 0);
+
+        DweetManager dweetManager = new DweetManager(new LineSensorSource(fifo.getPath()), Runnable::run);
+
+        try (OutputStream sensor = new FileOutputStream(fifo)) {
+            sensor.write("Starting temperature sensor\nweight: 18.25 Temp: 277.15\n".getBytes(StandardCharsets.US_ASCII));
+            sensor.flush();
+            await(() -> dweetManager.weightProperty().get() == 18.25);
+            assertEquals(277.15, dweetManager.tempProperty().get(), 0);
+        } finally {
+            dweetManager.stop();
+            fifo.delete();
+        }
+    }
+
+    @Test
+    public void replaySourceTest() throws IOException, InterruptedException {
+        File trace = File.createTempFile("beer_fridge_trace", ".csv");
+        trace.deleteOnExit();
+        Files.write(trace.toPath(), "# time,weight,temp\n0,30,277\n\n2000,29.5,277.5\n4000,29,278\n"
+                .getBytes(StandardCharsets.US_ASCII));
+
+        SensorSource source = DweetManager.createSensorSource("replay:" + trace.getPath() + "@100");
+        assertTrue(source instanceof ReplaySensorSource);
+        ReplaySensorSource replay = (ReplaySensorSource) source;
+        assertEquals(3, replay.getCount());
+        assertEquals(100, replay.getSpeed(), 0);
+
+        long start = System.nanoTime();
+        DweetManager dweetManager = new DweetManager(replay, Runnable::run, new WeightFilter(1, 0, 0));
+        try {
+            await(() -> replay.isFinished());
+            // 4 s of readings replayed 100 times faster
+            assertTrue(System.nanoTime() - start >= 40000000);
+            assertEquals(3, replay.getReplayedCount());
+            assertEquals(29, dweetManager.weightProperty().get(), 0);
+            assertEquals(278, dweetManager.tempProperty().get(), 0);
+        } finally {
+            dweetManager.stop();
+        }
+    }
+
+    @Test
+    public void coalesceUpdatesTest() {
+        ManualSource sensor = new ManualSource();
+        List<Runnable> fxQueue = new ArrayList<Runnable>();
+        DweetManager dweetManager = new DweetManager(sensor, fxQueue::add, new WeightFilter(1, 0, 0));
+
+        sensor.send(10, 4);
+        sensor.send(11, 5);
+        sensor.send(12, 6);
+
+        // only the first reading queues an update, it shows the latest sample
+        assertEquals(1, fxQueue.size());
+        assertEquals(2, dweetManager.getCoalescedCount());
+        SensorSample sample = dweetManager.getLatestSample();
+        assertEquals(12, sample.getWeight(), 0);
+        assertEquals(6, sample.getTemp(), 0);
+        assertEquals(0, dweetManager.weightProperty().get(), 0);
+
+        fxQueue.remove(0).run();
+        assertEquals(12, dweetManager.weightProperty().get(), 0);
+        assertEquals(6, dweetManager.tempProperty().get(), 0);
+
+        sensor.send(13, 7);
+        assertEquals(1, fxQueue.size());
+        fxQueue.remove(0).run();
+        assertEquals(13, dweetManager.weightProperty().get(), 0);
+        assertEquals(2, dweetManager.getCoalescedCount());
+        dweetManager.stop();
+    }
+}
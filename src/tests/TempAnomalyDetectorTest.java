@@ -0,0 +1,50 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import dataManagement.TempAnomalyDetector;
+
+public class TempAnomalyDetectorTest {
+
+    private static final long START = 1500000000000L;
+    private static final long MINUTE = 60000;
+
+    @Test
+    public void warmingTest() {
+        TempAnomalyDetector detector = new TempAnomalyDetector(360 * MINUTE, 4, 2, 5 * MINUTE, 0.3, 30 * MINUTE);
+        Random random = new Random(5);
+        long t = START;
+
+        // two hours of a steady fridge, a reading every second
+        for (; t < START + 120 * MINUTE; t += 1000) {
+            assertFalse(detector.add(t, 277 + random.nextGaussian() * 0.2));
+        }
+        assertEquals(277, detector.getMean(), 0.05);
+
+        // door open for two minutes
+        for (long end = t + 2 * MINUTE; t < end; t += 1000) {
+            assertFalse(detector.add(t, 280 + random.nextGaussian() * 0.2));
+        }
+
+        // compressor fails, warming 3 K an hour
+        long failure = t;
+        while (!detector.add(t, 277 + 3.0 * (t - failure) / (60 * MINUTE) + random.nextGaussian() * 0.2)) {
+            t += 1000;
+            assertTrue("Warming was not detected", t < failure + 60 * MINUTE);
+        }
+        assertTrue(detector.getScore() > 4);
+        assertEquals(1, detector.getWarmingCount());
+
+        // repaired, clears once back to normal for the hold time
+        long repair = t;
+        while (detector.add(t, 277 + random.nextGaussian() * 0.2)) {
+            t += 1000;
+        }
+        assertEquals(repair + 5 * MINUTE, t, 2000);
+        assertEquals(1, detector.getWarmingCount());
+    }
+}
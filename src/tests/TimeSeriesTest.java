@@ -0,0 +1,56 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import dataManagement.TimeSeries;
+
+public class TimeSeriesTest {
+
+    @Test
+    public void wrapAroundTest() {
+        TimeSeries series = new TimeSeries(4);
+        for (int i = 1; i <= 6; i++) {
+            series.add(i * 100, i);
+        }
+
+        // 1 and 2 were overwritten
+        assertEquals(4, series.size());
+        assertEquals(300, series.getTime(0));
+        assertEquals(3, series.getValue(0), 0);
+        assertEquals(600, series.getTime(3));
+        assertEquals(6, series.getValue(3), 0);
+
+        // a time going backwards is taken as the latest time
+        series.add(550, 7);
+        assertEquals(600, series.getTime(3));
+        assertEquals(7, series.getValue(3), 0);
+    }
+
+    @Test
+    public void rangeTest() {
+        TimeSeries series = new TimeSeries(8);
+        for (int i = 1; i <= 10; i++) {
+            series.add(i * 100, i);
+        }
+
+        assertEquals(3, series.count(400, 600));
+        assertEquals(3, series.count(350, 650));
+        assertEquals(0, series.count(0, 250));
+        assertEquals(8, series.count(Long.MIN_VALUE, Long.MAX_VALUE));
+
+        long[] times = new long[8];
+        double[] values = new double[8];
+        assertEquals(3, series.copyRange(450, 700, times, values));
+        assertEquals(500, times[0]);
+        assertEquals(7, values[2], 0);
+
+        // only the latest values of the range fit
+        long[] fewTimes = new long[2];
+        double[] fewValues = new double[2];
+        assertEquals(2, series.copyRange(Long.MIN_VALUE, Long.MAX_VALUE, fewTimes, fewValues));
+        assertEquals(900, fewTimes[0]);
+        assertEquals(10, fewValues[1], 0);
+    }
+}
@@ -0,0 +1,55 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import dataManagement.WeightFilter;
+
+public class WeightFilterTest {
+
+    @Test
+    public void smoothAndRejectSpikesTest() {
+        WeightFilter filter = new WeightFilter(5, 0.01, 0.25);
+        Random random = new Random(3);
+        double level = 0;
+
+        // noise of the scale with a spike every 20 readings
+        for (int i = 0; i < 500; i++) {
+            double reading = 20 + random.nextGaussian() * 0.5;
+            if (i % 20 == 10) {
+                reading += 15;
+            }
+            level = filter.filter(reading);
+            if (i > 20) {
+                assertEquals(20, level, 0.5);
+            }
+        }
+
+        assertEquals(500, filter.getResidualCount());
+        assertTrue(filter.getMaxResidual() > 14);
+        assertEquals(0.75, filter.getResidualMean(), 0.1); // from the spikes
+        assertTrue(filter.getResidualStdDev() > 0.5);
+
+        // a pour of 2 L is followed within a few readings
+        for (int i = 0; i < 30; i++) {
+            level = filter.filter(18);
+        }
+        assertEquals(18, level, 0.05);
+    }
+
+    @Test
+    public void passThroughTest() {
+        WeightFilter filter = new WeightFilter(1, 0, 0);
+        assertEquals(10, filter.filter(10), 0);
+        assertEquals(35, filter.filter(35), 0);
+        assertEquals(11, filter.filter(11), 0);
+        assertEquals(0, filter.getResidualMean(), 0);
+
+        filter.reset();
+        assertEquals(0, filter.getResidualCount());
+        assertEquals(1, filter.getMedianWindow());
+    }
+}
@@ -0,0 +1,87 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import dataManagement.WriteAheadLog;
+
+public class WriteAheadLogTest {
+
+    private static String createLogPath() throws IOException {
+        return Files.createTempDirectory("beer_fridge_test").toString() + System.getProperty("file.separator")
+                + "test.log";
+    }
+
+    @Test
+    public void replayTest() throws IOException, InterruptedException {
+        String path = createLogPath();
+        WriteAheadLog log = new WriteAheadLog(path);
+
+        for (int i = 0; i < 100; i++) {
+            log.append("record " + i);
+        }
+        log.sync();
+
+        assertEquals(100, log.getRecordCount());
+        assertTrue(log.getCommitCount() <= 100);
+
+        WriteAheadLog reopened = new WriteAheadLog(path);
+        assertEquals(100, reopened.readRecords().size());
+        assertEquals("record 99", reopened.readRecords().get(99));
+
+        // records are UTF-8 whatever the platform charset
+        log.append("K\u00f6lsch \u00e0 la pression \u2615");
+        log.sync();
+        assertEquals("K\u00f6lsch \u00e0 la pression \u2615", new WriteAheadLog(path).readRecords().get(100));
+    }
+
+    @Test
+    public void rotateTest() throws IOException, InterruptedException {
+        String path = createLogPath();
+        WriteAheadLog log = new WriteAheadLog(path);
+
+        log.append("a");
+        log.append("b");
+        log.rotate();
+        log.append("c");
+        log.sync();
+
+        // rotated records are still replayed until discarded
+        assertEquals(Arrays.asList("a", "b", "c"), new WriteAheadLog(path).readRecords());
+
+        log.rotate();
+        log.append("d");
+        log.sync();
+        assertEquals(Arrays.asList("a", "b", "c", "d"), new WriteAheadLog(path).readRecords());
+
+        log.discardRotated();
+        log.sync();
+        assertEquals(Arrays.asList("d"), new WriteAheadLog(path).readRecords());
+    }
+
+    @Test
+    public void closeTest() throws IOException, InterruptedException {
+        String path = createLogPath().replace("test.log", "closed.log");
+        WriteAheadLog log = new WriteAheadLog(path);
+
+        for (int i = 0; i < 100; i++) {
+            log.append("record " + i);
+        }
+        log.close();
+        assertEquals(100, log.getRecordCount());
+
+        // the writer thread is gone and further records are dropped
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            assertNotEquals("wal-closed.log", thread.getName());
+        }
+        log.append("late");
+        log.sync();
+        log.close();
+        assertEquals(100, new WriteAheadLog(path).readRecords().size());
+    }
+}
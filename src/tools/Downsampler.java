@@ -0,0 +1,83 @@
+package tools;
+
+/**
+ * Reduces a series of points to a given number of points that keep its visual
+ * shape, using the Largest-Triangle-Three-Buckets algorithm. The first and last
+ * points are always kept; every point in between comes from one of equally
+ * sized buckets, choosing the point forming the largest triangle with the
+ * point chosen from the previous bucket and the average of the next bucket.
+ * Peaks and dips therefore survive the reduction, unlike when averaging or
+ * skipping points. The cost is linear in the number of input points and no
+ * memory is allocated.
+ *
+ * @author Aidan
+ *
+ */
+public class Downsampler {
+
+    private Downsampler() {
+    }
+
+    /**
+     * Copies up to threshold points of the count points in x and y into outX
+     * and outY, which must hold at least min(count, threshold) points. If count
+     * is at most threshold, or threshold is less than 3, all points fit and are
+     * copied as they are.
+     *
+     * @return number of points copied.
+     */
+    public static int lttb(long[] x, double[] y, int count, int threshold, long[] outX, double[] outY) {
+        if (count <= threshold || threshold < 3) {
+            int copied = Math.min(count, Math.min(outX.length, outY.length));
+            System.arraycopy(x, 0, outX, 0, copied);
+            System.arraycopy(y, 0, outY, 0, copied);
+            return copied;
+        }
+
+        // buckets between the first and last point
+        double bucketSize = (double) (count - 2) / (threshold - 2);
+        long origin = x[0]; // times relative to the first keep precision
+        int chosen = 0;
+
+        outX[0] = x[0];
+        outY[0] = y[0];
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // average of the next bucket, the last point for the last bucket
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, count);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += x[i] - origin;
+                averageY += y[i];
+            }
+            averageX /= nextEnd - nextStart;
+            averageY /= nextEnd - nextStart;
+
+            // point of this bucket forming the largest triangle
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = nextStart;
+            double chosenX = x[chosen] - origin;
+            double chosenY = y[chosen];
+            double maxArea = -1;
+            int next = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((chosenX - averageX) * (y[i] - chosenY)
+                        - (chosenX - (x[i] - origin)) * (averageY - chosenY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = i;
+                }
+            }
+
+            chosen = next;
+            outX[bucket + 1] = x[chosen];
+            outY[bucket + 1] = y[chosen];
+        }
+
+        outX[threshold - 1] = x[count - 1];
+        outY[threshold - 1] = y[count - 1];
+        return threshold;
+    }
+}
@@ -0,0 +1,87 @@
+package tools;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies into fixed buckets with roughly logarithmic bounds so that
+ * their distribution can be reported without keeping every sample. Recording
+ * is lock free and may happen from any thread.
+ *
+ * @author Aidan
+ *
+ */
+public class LatencyHistogram {
+
+    // upper bounds of the buckets in ms, the last bucket is unbounded
+    private static final long[] BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+
+    /**
+     * @param millis
+     *            long giving the latency to count in ms.
+     */
+    public void record(long millis) {
+        int bucket = 0;
+        while (bucket < BOUNDS.length && millis > BOUNDS[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+    }
+
+    /**
+     * @return number of latencies recorded.
+     */
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @param percentile
+     *            double between 0 and 100.
+     * @return upper bound in ms of the bucket holding the given percentile, 0
+     *         if nothing was recorded or Long.MAX_VALUE if it falls in the
+     *         unbounded bucket.
+     */
+    public long getPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return BOUNDS[i];
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * @return String listing the count of every non-empty bucket, e.g.
+     *         "<=50ms: 12, <=100ms: 3".
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+            if (count == 0) {
+                continue;
+            }
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(i < BOUNDS.length ? "<=" + BOUNDS[i] + "ms" : ">" + BOUNDS[BOUNDS.length - 1] + "ms");
+            builder.append(": ").append(count);
+        }
+        return builder.toString();
+    }
+}